@@ -0,0 +1,71 @@
+package com.example.url_media_save.benchmark;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.service.MediaParser;
+import com.example.url_media_save.service.http.HttpTransport;
+import com.example.url_media_save.service.metrics.MediaMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Link extraction from a large synthetic page mixing media links, page links, scripts and plain text
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MediaParserBenchmark {
+    private static final String BASE_URL = "https://example.com";
+
+    @Param({"1000", "10000"})
+    int links;
+
+    private MediaParser mediaParser;
+    private String page;
+
+    @Setup
+    public void setUp() {
+        MediaSaverConfig config = new MediaSaverConfig();
+        MediaMetrics metrics = new MediaMetrics(new SimpleMeterRegistry());
+        mediaParser = new MediaParser(new HttpTransport(config, metrics), metrics);
+        page = syntheticPage(links);
+    }
+
+    @Benchmark
+    public List<String> extractUrlsFromPage() {
+        return mediaParser.extractUrlsFromPage(page, BASE_URL);
+    }
+
+    static String syntheticPage(int links) {
+        StringBuilder html = new StringBuilder(links * 120)
+                .append("<!DOCTYPE html><html><head><title>Gallery</title>")
+                .append("<script>var data = {\"items\": [1, 2, 3], \"href\": \"not-a-link\"};</script></head><body>");
+        for (int i = 0; i < links; i++) {
+            switch (i % 4) {
+                case 0 -> html.append("<a href=\"/images/photo-").append(i).append(".jpg\">Photo ").append(i).append("</a>");
+                case 1 -> html.append("<img src=\"").append(BASE_URL).append("/media/clip-").append(i).append(".mp4?v=2\" alt=\"clip\">");
+                case 2 -> html.append("<a href=\"/gallery/page-").append(i).append("\">Next page</a>");
+                default -> html.append("<p class=\"caption\">Description of item ").append(i).append(" with some text</p>");
+            }
+            if (i % 10 == 0) {
+                html.append('\n');
+            }
+        }
+        return html.append("</body></html>").toString();
+    }
+}
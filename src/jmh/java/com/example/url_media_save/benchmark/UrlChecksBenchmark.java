@@ -0,0 +1,63 @@
+package com.example.url_media_save.benchmark;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.service.MediaTypeRegistry;
+import com.example.url_media_save.service.Saver;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-link checks that run for every link found on a page, reported in links per millisecond
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlChecksBenchmark {
+    private static final String[] URLS = {
+            "https://example.com/images/photo-1.jpg",
+            "https://cdn.example.com/media/clip.MP4?token=abc&expires=123",
+            "https://example.com/gallery/page-2",
+            "https://example.com/archive.tar.gz#files",
+            "https://example.com/api/v1.2/items?format=json",
+            "not a url",
+            "https://example.com/images/photo.webp",
+            "/relative/path.png",
+    };
+
+    private Saver saver;
+
+    @Setup
+    public void setUp() {
+        // Extension detection and URL validation touch none of the collaborators
+        MediaSaverConfig config = new MediaSaverConfig();
+        saver = new Saver(config, null, null, null, null, null, null, null, new MediaTypeRegistry(config));
+    }
+
+    @Benchmark
+    public void getFileExtension(Blackhole blackhole) {
+        for (String url : URLS) {
+            blackhole.consume(saver.getFileExtension(url));
+        }
+    }
+
+    @Benchmark
+    public void isValidUrl(Blackhole blackhole) {
+        for (String url : URLS) {
+            blackhole.consume(saver.isValidUrl(url));
+        }
+    }
+}
@@ -1,16 +1,105 @@
 package com.example.url_media_save.config;
 
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Data
 @Component
-@ConfigurationProperties()
+@ConfigurationProperties(prefix = "media.saver")
 public class MediaSaverConfig {
     private int connectTimeout = 10000;
     private int readTimeout = 10000;
     private int maxFilenameLength = 100;
     private String defaultSavePath = "C:/temp";
     private boolean useUrlAsFilename = false;
-} 
\ No newline at end of file
+    private int maxConcurrentDownloads = 64;
+    private int maxConcurrentDownloadsPerHost = 8;
+    private int crawlMaxDepth = 2;
+    private int crawlMaxPages = 1000;
+    private int crawlParallelism = 8;
+    /**
+     * Tracking parameters dropped from links before they are compared, "*" matches a name prefix.
+     * Only defined here, setting ignored-query-params replaces the whole list.
+     */
+    private List<String> ignoredQueryParams = new ArrayList<>(List.of("utm_*", "fbclid", "gclid", "dclid", "msclkid", "yclid", "mc_cid", "mc_eid", "_ga"));
+    private boolean contentIndexEnabled = true;
+    private boolean hardLinkKnownContent = false;
+    private boolean conditionalDownloadsEnabled = true;
+    private int downloadAttempts = 3;
+    private boolean segmentedDownloadsEnabled = false;
+    private long segmentedDownloadThresholdBytes = 50L * 1024 * 1024;
+    private int downloadSegments = 4;
+    private boolean headSizeProbeEnabled = false;
+    private double hostRequestsPerSecond = 20;
+    private double hostMinRequestsPerSecond = 0.5;
+    private int hostBurst = 20;
+    private long maxRetryAfterMs = 300000;
+    private int circuitBreakerFailureThreshold = 5;
+    private long circuitBreakerOpenMs = 30000;
+    private int jobParallelism = 4;
+    private int jobQueueCapacity = 100;
+    private int jobRetentionMinutes = 60;
+    private long jobStreamTimeoutMs = 3600000;
+    private int reportMaxUrlsPerCategory = 1000;
+    private boolean retryEnabled = true;
+    private int retryNetworkMaxAttempts = 5;
+    private long retryNetworkInitialDelayMs = 30000;
+    private int retryThrottledMaxAttempts = 8;
+    private long retryThrottledInitialDelayMs = 120000;
+    private int retryServerErrorMaxAttempts = 4;
+    private long retryServerErrorInitialDelayMs = 60000;
+    private long retryMaxDelayMs = 21600000;
+    private int retryBatchSize = 32;
+    private long retryPollIntervalMs = 30000;
+    private long retryLeaseMs = 600000;
+    private int metricsMaxHosts = 500;
+    private int transferBufferSize = 65536;
+    private int transferBufferPoolSize = 64;
+    private boolean preallocateFiles = false;
+    private int auditBatchSize = 50;
+    private int auditQueueCapacity = 10000;
+    private long auditShutdownTimeoutMs = 10000;
+    private boolean downloadLedgerEnabled = true;
+    private int downloadLedgerChunkSize = 1000;
+    private boolean seenUrlFilterEnabled = true;
+    private String seenUrlFilterFile = "data/seen-urls.bloom";
+    private long seenUrlFilterExpectedUrls = 50_000_000;
+    private double seenUrlFilterFalsePositiveRate = 0.01;
+    private boolean sniffExtensionlessLinks = false;
+    /**
+     * Saved file types. Only defined here, setting media-types replaces the whole list.
+     */
+    private List<MediaTypeDefinition> mediaTypes = new ArrayList<>(List.of(
+            new MediaTypeDefinition(List.of(".jpg", ".jpeg"), List.of("image/jpeg", "image/pjpeg"), List.of("FFD8FF")),
+            new MediaTypeDefinition(List.of(".png"), List.of("image/png"), List.of("89504E470D0A1A0A")),
+            // GIF87a, GIF89a
+            new MediaTypeDefinition(List.of(".gif"), List.of("image/gif"), List.of("474946383761", "474946383961")),
+            // "ftyp" box after the box size
+            new MediaTypeDefinition(List.of(".mp4"), List.of("video/mp4"), List.of("????????66747970")),
+            // ID3 tag or MPEG audio frame sync
+            new MediaTypeDefinition(List.of(".mp3"), List.of("audio/mpeg", "audio/mp3"), List.of("494433", "FFFB", "FFF3", "FFF2"))));
+
+    /**
+     * A media type that is saved, see {@link com.example.url_media_save.service.MediaTypeRegistry}
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class MediaTypeDefinition {
+        /**
+         * URL extensions with the dot, the first one names files whose type was found by Content-Type or content
+         */
+        private List<String> extensions = new ArrayList<>();
+        private List<String> contentTypes = new ArrayList<>();
+        /**
+         * Hex signatures of the first bytes of the content, "??" matches any byte
+         */
+        private List<String> magic = new ArrayList<>();
+    }
+}
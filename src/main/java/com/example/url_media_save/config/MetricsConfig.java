@@ -0,0 +1,19 @@
+package com.example.url_media_save.config;
+
+import com.example.url_media_save.service.metrics.MediaMetrics;
+import io.micrometer.core.instrument.config.MeterFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Stops registering new hosts once {@link MediaSaverConfig#getMetricsMaxHosts()} hosts are tagged,
+     * every crawled host would otherwise create its own set of meters
+     */
+    @Bean
+    MeterFilter hostTagLimit(MediaSaverConfig config) {
+        return MeterFilter.maximumAllowableTags("media.", MediaMetrics.HOST_TAG, config.getMetricsMaxHosts(), MeterFilter.deny());
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.url_media_save.controller;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.dto.JobEventDto;
+import com.example.url_media_save.dto.JobStatusDto;
+import com.example.url_media_save.dto.UrlRequestDto;
+import com.example.url_media_save.service.job.JobEventSink;
+import com.example.url_media_save.service.job.MediaJob;
+import com.example.url_media_save.service.job.MediaJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Asynchronous variant of /mediaget: the crawl runs as a background job which the client polls
+ * or follows as a stream of per-file results, so no request thread is held for the whole crawl.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/mediaget/jobs")
+@RequiredArgsConstructor
+public class MediaJobController {
+    private static final String RETRY_AFTER_SECONDS = "30";
+
+    private final MediaJobService mediaJobService;
+    private final MediaSaverConfig config;
+
+    @PostMapping
+    ResponseEntity<JobStatusDto> submit(@RequestBody UrlRequestDto url, @RequestHeader HttpHeaders headers) {
+        log.info("Job request from: {} time: {}", headers, url.getRequestTime());
+        try {
+            MediaJob job = mediaJobService.submit(url);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/mediaget/jobs/" + job.getId()))
+                    .body(job.toStatusDto());
+        } catch (RejectedExecutionException e) {
+            log.warn("Job queue is full, rejected {}", url.getUrl());
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS)
+                    .build();
+        }
+    }
+
+    @GetMapping("/{id}")
+    ResponseEntity<JobStatusDto> status(@PathVariable String id) {
+        return mediaJobService.find(id)
+                .map(job -> ResponseEntity.ok(job.toStatusDto()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/{id}/results", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    ResponseEntity<SseEmitter> resultsAsEvents(@PathVariable String id) {
+        return mediaJobService.find(id)
+                .map(job -> {
+                    SseEmitter emitter = new SseEmitter(config.getJobStreamTimeoutMs());
+                    stream(job, emitter, event -> emitter.send(SseEmitter.event().name(event.getType()).data(event)));
+                    return ResponseEntity.ok(emitter);
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping(value = "/{id}/results", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    ResponseEntity<ResponseBodyEmitter> resultsAsNdjson(@PathVariable String id) {
+        return mediaJobService.find(id)
+                .map(job -> {
+                    ResponseBodyEmitter emitter = new ResponseBodyEmitter(config.getJobStreamTimeoutMs());
+                    stream(job, emitter, event -> {
+                        emitter.send(event, MediaType.APPLICATION_JSON);
+                        emitter.send("\n", MediaType.TEXT_PLAIN);
+                    });
+                    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(emitter);
+                })
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Feeds the job results to the emitter on a virtual thread, which is stopped when the client goes away
+     */
+    private void stream(MediaJob job, ResponseBodyEmitter emitter, JobEventSink sink) {
+        Thread streamer = Thread.ofVirtual().name("job-stream-" + job.getId()).start(() -> {
+            try {
+                mediaJobService.streamResults(job, sink);
+                emitter.complete();
+            } catch (IOException | IllegalStateException e) {
+                log.debug("Result stream of job {} closed: {}", job.getId(), e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        emitter.onTimeout(streamer::interrupt);
+        emitter.onError(e -> streamer.interrupt());
+    }
+}
@@ -1,10 +1,12 @@
 package com.example.url_media_save.controller;
 
 import com.example.url_media_save.db.entity.UrlRequestEntity;
+import com.example.url_media_save.db.service.DownloadLedgerRecorder;
 import com.example.url_media_save.db.service.UrlService;
 import com.example.url_media_save.dto.InfoResponseDto;
 import com.example.url_media_save.dto.UrlRequestDto;
 import com.example.url_media_save.service.SaveMediaService;
+import com.example.url_media_save.service.crawl.CrawlListener;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
@@ -28,7 +30,9 @@ public class UrlMediaParseController {
         InfoResponseDto mediaFromUrl;
         try {
             UrlRequestEntity entity = urlService.save(url);
-            mediaFromUrl = saveMediaService.getMediaFromUrl(url.getUrl(), url.getPathToSave(), url.getNotSaveFileInKb(), url.getCheckNested());
+            try (DownloadLedgerRecorder ledger = urlService.ledger(entity, CrawlListener.NONE)) {
+                mediaFromUrl = saveMediaService.getMediaFromUrl(url.getUrl(), url.getPathToSave(), url.getNotSaveFileInKb(), url.getCheckNested(), ledger);
+            }
             urlService.saveResultInfo(entity, mediaFromUrl.getRequiredTimeMs(), mediaFromUrl.getDeleteDuplicates(), mediaFromUrl.getTotalProcessed(), mediaFromUrl.getTotalSuccessful(), mediaFromUrl.getTotalFailed());
         } catch (Exception e) {
             log.error("Bad request: {}", e.getMessage());
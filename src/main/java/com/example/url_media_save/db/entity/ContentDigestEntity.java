@@ -0,0 +1,38 @@
+package com.example.url_media_save.db.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class ContentDigestEntity {
+    @Id
+    String digest;
+    String path;
+    Long sizeBytes;
+    LocalDateTime createdTime;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ContentDigestEntity that = (ContentDigestEntity) o;
+        return digest.equals(that.digest);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(digest);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.url_media_save.db.entity;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import com.example.url_media_save.service.retry.FailureClass;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.FieldDefaults;
+
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+@Data
+@Entity
+@NoArgsConstructor
+@AllArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class FailedDownloadEntity {
+    public static final String PENDING = "PENDING";
+    public static final String GAVE_UP = "GAVE_UP";
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    Long id;
+    String url;
+    String pathToSave;
+    Long minSizeBytes;
+    @Enumerated(EnumType.STRING)
+    FailureClass failureClass;
+    String lastError;
+    Integer attempts;
+    String status;
+    LocalDateTime nextAttemptTime;
+    LocalDateTime createdTime;
+    LocalDateTime updatedTime;
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FailedDownloadEntity that = (FailedDownloadEntity) o;
+        return id.equals(that.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id);
+    }
+}
@@ -3,12 +3,17 @@ package com.example.url_media_save.db.mapper;
 import com.example.url_media_save.db.entity.UrlRequestEntity;
 import com.example.url_media_save.dto.UrlRequestDto;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 import org.mapstruct.MappingTarget;
 
 @Mapper(componentModel = "spring")
 public interface UrlMapper {
     UrlRequestEntity toEntity(UrlRequestDto dto);
     UrlRequestDto toDto(UrlRequestEntity entity);
+    UrlRequestEntity snapshot(UrlRequestEntity entity);
+
+    @Mapping(target = "id", ignore = true)
+    void updateState(@MappingTarget UrlRequestEntity target, UrlRequestEntity source);
 
     void updateResultFields(@MappingTarget UrlRequestEntity entity,
                             Long requiredTimeMs,
@@ -0,0 +1,25 @@
+package com.example.url_media_save.db.repository;
+
+import com.example.url_media_save.db.entity.ContentDigestEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ContentDigestRepository extends JpaRepository<ContentDigestEntity, String> {
+
+    /**
+     * Inserts the digest unless it is already indexed, atomically with respect to concurrent downloads
+     * @return 1 if the digest was inserted, 0 if it was already there
+     */
+    @Modifying
+    @Query(value = "insert into content_digest_entity (digest, path, size_bytes, created_time) " +
+            "values (:digest, :path, :sizeBytes, now()) on conflict (digest) do nothing", nativeQuery = true)
+    int insertIfAbsent(@Param("digest") String digest, @Param("path") String path, @Param("sizeBytes") long sizeBytes);
+
+    @Modifying
+    @Query("update ContentDigestEntity c set c.path = :path, c.sizeBytes = :sizeBytes where c.digest = :digest")
+    int updateStoredCopy(@Param("digest") String digest, @Param("path") String path, @Param("sizeBytes") long sizeBytes);
+}
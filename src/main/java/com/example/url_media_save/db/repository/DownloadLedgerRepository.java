@@ -0,0 +1,89 @@
+package com.example.url_media_save.db.repository;
+
+import com.example.url_media_save.dto.DownloadLedgerEntryDto;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Bulk writes of the download ledger.
+ * Entries are streamed with a single COPY, which costs one round trip however many files a crawl had.
+ * Connections that are not Postgres fall back to a JDBC batch insert.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DownloadLedgerRepository {
+    private static final String COLUMNS = "request_id, url, host, status, size_bytes, digest, latency_ms, finished_time";
+    private static final String COPY_SQL = "copy download_ledger (" + COLUMNS + ") from stdin with (format csv)";
+    private static final String INSERT_SQL = "insert into download_ledger (" + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * @param entries Entries to append
+     * @return Number of rows written
+     */
+    public long insert(List<DownloadLedgerEntryDto> entries) {
+        if (entries.isEmpty()) {
+            return 0;
+        }
+        Long copied = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            if (!connection.isWrapperFor(PGConnection.class)) {
+                return null;
+            }
+            try {
+                return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL, new StringReader(toCsv(entries)));
+            } catch (IOException e) {
+                throw new SQLException("COPY into download_ledger failed", e);
+            }
+        });
+        if (copied != null) {
+            return copied;
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, entries, entries.size(), (ps, entry) -> {
+            ps.setObject(1, entry.getRequestId(), Types.BIGINT);
+            ps.setString(2, entry.getUrl());
+            ps.setString(3, entry.getHost());
+            ps.setString(4, entry.getStatus().name());
+            ps.setObject(5, entry.getSizeBytes(), Types.BIGINT);
+            ps.setString(6, entry.getDigest());
+            ps.setLong(7, entry.getLatencyMs());
+            ps.setTimestamp(8, Timestamp.valueOf(entry.getFinishedTime()));
+        });
+        return entries.size();
+    }
+
+    private static String toCsv(List<DownloadLedgerEntryDto> entries) {
+        StringBuilder csv = new StringBuilder(entries.size() * 160);
+        for (DownloadLedgerEntryDto entry : entries) {
+            csv.append(entry.getRequestId() != null ? entry.getRequestId() : "").append(',');
+            appendQuoted(csv, entry.getUrl()).append(',');
+            appendQuoted(csv, entry.getHost()).append(',');
+            csv.append(entry.getStatus().name()).append(',');
+            csv.append(entry.getSizeBytes() != null ? entry.getSizeBytes() : "").append(',');
+            appendQuoted(csv, entry.getDigest()).append(',');
+            csv.append(entry.getLatencyMs()).append(',');
+            csv.append(entry.getFinishedTime()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Quotes a CSV value, an unquoted empty field is NULL in COPY
+     */
+    private static StringBuilder appendQuoted(StringBuilder csv, String value) {
+        if (value == null) {
+            return csv;
+        }
+        return csv.append('"').append(value.replace("\"", "\"\"")).append('"');
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.url_media_save.db.repository;
+
+import com.example.url_media_save.db.entity.FailedDownloadEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface FailedDownloadRepository extends JpaRepository<FailedDownloadEntity, Long> {
+    /**
+     * Attempts a new failure counts on, none if the row gave up before
+     */
+    String PREVIOUS_ATTEMPTS = "(case when failed_download_entity.status = 'GAVE_UP' then 0 else failed_download_entity.attempts end)";
+
+    /**
+     * Records a failed attempt in one statement: the row is created on the first failure, later failures
+     * count the attempt, and the next attempt is scheduled with exponential backoff and ±20% jitter.
+     * The row gives up once {@code maxAttempts} is reached. A row that gave up starts over when a later crawl
+     * fails on the same URL again.
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "insert into failed_download_entity (url, path_to_save, min_size_bytes, failure_class, last_error, " +
+            "attempts, status, next_attempt_time, created_time, updated_time) " +
+            "values (:url, :pathToSave, :minSizeBytes, :failureClass, :lastError, 1, " +
+            "case when :maxAttempts <= 1 then 'GAVE_UP' else 'PENDING' end, " +
+            "now() + :initialDelayMs * (0.8 + random() * 0.4) * interval '1 millisecond', now(), now()) " +
+            "on conflict (url, path_to_save) do update set " +
+            "min_size_bytes = excluded.min_size_bytes, failure_class = excluded.failure_class, " +
+            "last_error = excluded.last_error, attempts = " + PREVIOUS_ATTEMPTS + " + 1, " +
+            "status = case when " + PREVIOUS_ATTEMPTS + " + 1 >= :maxAttempts then 'GAVE_UP' else 'PENDING' end, " +
+            "next_attempt_time = now() + least(:maxDelayMs, :initialDelayMs * power(2, " + PREVIOUS_ATTEMPTS + ")) " +
+            "* (0.8 + random() * 0.4) * interval '1 millisecond', " +
+            "updated_time = now()",
+            nativeQuery = true)
+    void recordFailure(@Param("url") String url, @Param("pathToSave") String pathToSave,
+                       @Param("minSizeBytes") long minSizeBytes, @Param("failureClass") String failureClass,
+                       @Param("lastError") String lastError, @Param("maxAttempts") int maxAttempts,
+                       @Param("initialDelayMs") long initialDelayMs, @Param("maxDelayMs") long maxDelayMs);
+
+    /**
+     * Claims pending downloads that are due by moving their next attempt {@code leaseMs} into the future,
+     * so a download whose retry never reports back is picked up again once the lease expires.
+     * Rows locked by another instance are skipped.
+     */
+    @Transactional
+    @Query(value = "update failed_download_entity set next_attempt_time = now() + :leaseMs * interval '1 millisecond' " +
+            "where id in (select id from failed_download_entity where status = 'PENDING' and next_attempt_time <= now() " +
+            "order by next_attempt_time limit :limit for update skip locked) " +
+            "returning *",
+            nativeQuery = true)
+    List<FailedDownloadEntity> claimDue(@Param("limit") int limit, @Param("leaseMs") long leaseMs);
+
+    @Modifying
+    @Transactional
+    @Query("delete from FailedDownloadEntity f where f.url = :url and f.pathToSave = :pathToSave")
+    int deleteByUrlAndPathToSave(@Param("url") String url, @Param("pathToSave") String pathToSave);
+}
@@ -0,0 +1,37 @@
+package com.example.url_media_save.db.repository;
+
+import com.example.url_media_save.db.entity.UrlCacheEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+@Repository
+public interface UrlCacheRepository extends JpaRepository<UrlCacheEntity, String> {
+
+    @Modifying
+    @Transactional
+    @Query(value = "insert into url_cache_entity (url, etag, last_modified, content_length, path, updated_time) " +
+            "values (:url, :etag, :lastModified, :contentLength, :path, now()) " +
+            "on conflict (url) do update set etag = excluded.etag, last_modified = excluded.last_modified, " +
+            "content_length = excluded.content_length, path = excluded.path, updated_time = excluded.updated_time",
+            nativeQuery = true)
+    void upsert(@Param("url") String url, @Param("etag") String etag, @Param("lastModified") String lastModified,
+                @Param("contentLength") Long contentLength, @Param("path") String path);
+
+    /**
+     * Pages through all cached URLs in key order
+     * @param after Last URL of the previous page, "" for the first page
+     */
+    @Query(value = "select url from url_cache_entity where url > :after order by url limit :limit", nativeQuery = true)
+    List<String> findUrlsAfter(@Param("after") String after, @Param("limit") int limit);
+
+    @Modifying
+    @Transactional
+    @Query("update UrlCacheEntity c set c.path = :path where c.url = :url")
+    int updatePath(@Param("url") String url, @Param("path") String path);
+}
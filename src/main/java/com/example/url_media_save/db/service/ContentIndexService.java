@@ -0,0 +1,53 @@
+package com.example.url_media_save.db.service;
+
+import com.example.url_media_save.db.entity.ContentDigestEntity;
+import com.example.url_media_save.db.repository.ContentDigestRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Persistent index of content digests of all stored files, shared by all requests and folders.
+ * Each lookup is a single primary key probe, so it does not slow down as the index grows.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ContentIndexService {
+    private final ContentDigestRepository contentDigestRepository;
+
+    /**
+     * @param digest Content digest of the file
+     * @param sizeBytes File size, a stored copy of another size is not the same content
+     * @return Path of the stored copy of the content, empty if there is none or it was removed from disk
+     */
+    @Transactional(readOnly = true)
+    public Optional<String> findStoredCopy(String digest, long sizeBytes) {
+        return contentDigestRepository.findById(digest)
+                .filter(stored -> stored.getSizeBytes() != null && stored.getSizeBytes() == sizeBytes)
+                .map(ContentDigestEntity::getPath)
+                .filter(path -> Files.exists(Path.of(path)));
+    }
+
+    /**
+     * Registers a committed file as the stored copy of its content, unless another stored copy still exists
+     * @param digest Content digest of the file
+     * @param path Absolute path of the file, it must already be on disk
+     * @param sizeBytes File size
+     */
+    @Transactional
+    public void registerStoredCopy(String digest, String path, long sizeBytes) {
+        if (contentDigestRepository.insertIfAbsent(digest, path, sizeBytes) == 1
+                || findStoredCopy(digest, sizeBytes).isPresent()) {
+            return;
+        }
+        // The stored copy was removed from disk, this file takes its place
+        log.debug("Stored copy of {} is gone, indexing {} instead", digest, path);
+        contentDigestRepository.updateStoredCopy(digest, path, sizeBytes);
+    }
+}
@@ -0,0 +1,131 @@
+package com.example.url_media_save.db.service;
+
+import com.example.url_media_save.db.entity.UrlRequestEntity;
+import com.example.url_media_save.dto.DownloadLedgerEntryDto;
+import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.dto.FileResultDto;
+import com.example.url_media_save.dto.SavedFileDto;
+import com.example.url_media_save.service.crawl.CrawlListener;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects the outcome of every file of a crawl for the download ledger and passes the crawl progress on
+ * to another listener. Entries are handed to the {@link RequestAuditWriter} in chunks while the crawl runs,
+ * close the recorder when the crawl is over to hand over the rest. A disabled recorder only passes the progress on.
+ */
+public class DownloadLedgerRecorder implements CrawlListener, AutoCloseable {
+    private final RequestAuditWriter requestAuditWriter;
+    private final UrlRequestEntity request;
+    private final CrawlListener delegate;
+    private final boolean enabled;
+    private final int chunkSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private List<DownloadLedgerEntryDto> chunk;
+
+    DownloadLedgerRecorder(RequestAuditWriter requestAuditWriter, UrlRequestEntity request, CrawlListener delegate,
+                           boolean enabled, int chunkSize) {
+        this.requestAuditWriter = requestAuditWriter;
+        this.request = request;
+        this.delegate = delegate;
+        this.enabled = enabled;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.chunk = new ArrayList<>();
+    }
+
+    @Override
+    public void pageProcessed(String url, int linksFound) {
+        delegate.pageProcessed(url, linksFound);
+    }
+
+    @Override
+    public void downloadCompleted(DownloadResultDto result) {
+        if (enabled) {
+            record(result);
+        }
+        delegate.downloadCompleted(result);
+    }
+
+    private void record(DownloadResultDto result) {
+        List<DownloadLedgerEntryDto> entries = toEntries(result);
+        List<DownloadLedgerEntryDto> full = null;
+        lock.lock();
+        try {
+            chunk.addAll(entries);
+            if (chunk.size() >= chunkSize) {
+                full = chunk;
+                chunk = new ArrayList<>(chunkSize);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (full != null) {
+            requestAuditWriter.writeLedger(request, full);
+        }
+    }
+
+    @Override
+    public void close() {
+        List<DownloadLedgerEntryDto> rest;
+        lock.lock();
+        try {
+            rest = chunk;
+            chunk = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        if (!rest.isEmpty()) {
+            requestAuditWriter.writeLedger(request, rest);
+        }
+    }
+
+    private static List<DownloadLedgerEntryDto> toEntries(DownloadResultDto result) {
+        LocalDateTime finishedTime = LocalDateTime.now();
+        long latencyMs = result.getProcessingTimeMs();
+        List<DownloadLedgerEntryDto> entries = new ArrayList<>(result.getTotalProcessed());
+        for (SavedFileDto savedFile : result.getSavedFiles()) {
+            entries.add(DownloadLedgerEntryDto.builder()
+                    .url(savedFile.getUrl())
+                    .host(hostOf(savedFile.getUrl()))
+                    .status(savedFile.getDuplicateOf() != null ? FileResultDto.Outcome.DUPLICATE : FileResultDto.Outcome.SAVED)
+                    .sizeBytes(savedFile.getSizeBytes())
+                    .digest(savedFile.getDigest())
+                    .latencyMs(latencyMs)
+                    .finishedTime(finishedTime)
+                    .build());
+        }
+        addEntries(entries, result.getNotModified(), FileResultDto.Outcome.NOT_MODIFIED, latencyMs, finishedTime);
+        addEntries(entries, result.getTooSmall(), FileResultDto.Outcome.TOO_SMALL, latencyMs, finishedTime);
+        addEntries(entries, result.getFailedDownloads(), FileResultDto.Outcome.FAILED, latencyMs, finishedTime);
+        addEntries(entries, result.getInvalidUrls(), FileResultDto.Outcome.INVALID, latencyMs, finishedTime);
+        addEntries(entries, result.getUrlsWithoutExtension(), FileResultDto.Outcome.NO_EXTENSION, latencyMs, finishedTime);
+        return entries;
+    }
+
+    private static void addEntries(List<DownloadLedgerEntryDto> entries, List<String> urls, FileResultDto.Outcome status,
+                                   long latencyMs, LocalDateTime finishedTime) {
+        for (String url : urls) {
+            entries.add(DownloadLedgerEntryDto.builder()
+                    .url(url)
+                    .host(hostOf(url))
+                    .status(status)
+                    .latencyMs(latencyMs)
+                    .finishedTime(finishedTime)
+                    .build());
+        }
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host != null ? host.toLowerCase(Locale.ROOT) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
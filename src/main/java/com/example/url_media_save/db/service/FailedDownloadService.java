@@ -0,0 +1,96 @@
+package com.example.url_media_save.db.service;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.db.entity.FailedDownloadEntity;
+import com.example.url_media_save.db.repository.FailedDownloadRepository;
+import com.example.url_media_save.service.retry.FailureClass;
+import com.example.url_media_save.service.retry.RetryPolicy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.List;
+
+/**
+ * Durable queue of failed downloads.
+ * Every failure is stored with its {@link FailureClass}, and the next attempt is scheduled by the {@link RetryPolicy}
+ * of that class. A download that keeps failing ends up as {@link FailedDownloadEntity#GAVE_UP}, so it is
+ * never lost silently. A download that succeeds later is removed from the queue.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FailedDownloadService {
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final FailedDownloadRepository failedDownloadRepository;
+    private final MediaSaverConfig config;
+
+    /**
+     * Stores a failed download attempt
+     * @param url Media URL
+     * @param pathToSave Directory the file should be saved to
+     * @param minSizeBytes Minimum file size of the crawl the URL was found by
+     * @param error Cause of the failure
+     */
+    public void recordFailure(String url, String pathToSave, long minSizeBytes, IOException error) {
+        // Downloads interrupted by a shutdown did not fail, a timeout did
+        if (!config.isRetryEnabled() || (error instanceof InterruptedIOException && !(error instanceof SocketTimeoutException))) {
+            return;
+        }
+        FailureClass failureClass = FailureClass.of(error);
+        RetryPolicy policy = RetryPolicy.of(failureClass, config);
+        String message = String.valueOf(error.getMessage());
+        try {
+            failedDownloadRepository.recordFailure(url, pathToSave, minSizeBytes, failureClass.name(),
+                    message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message,
+                    policy.getMaxAttempts(), policy.getInitialDelayMs(), policy.getMaxDelayMs());
+        } catch (DataAccessException e) {
+            log.warn("Failed to queue {} for retry: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Removes the queued failure of a download that has been completed since, whichever crawl completed it,
+     * so it is not fetched again
+     * @param url Media URL
+     * @param pathToSave Directory the file was saved to
+     */
+    public void recordSuccess(String url, String pathToSave) {
+        if (!config.isRetryEnabled()) {
+            return;
+        }
+        try {
+            failedDownloadRepository.deleteByUrlAndPathToSave(url, pathToSave);
+        } catch (DataAccessException e) {
+            log.warn("Failed to remove {} from the retry queue: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * @return Pending downloads that are due, claimed for {@link MediaSaverConfig#getRetryLeaseMs()}
+     */
+    public List<FailedDownloadEntity> claimDue(int limit) {
+        try {
+            return failedDownloadRepository.claimDue(limit, config.getRetryLeaseMs());
+        } catch (DataAccessException e) {
+            log.warn("Failed to read the retry queue: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    /**
+     * Removes a download that no longer has to be retried
+     */
+    public void remove(Long id) {
+        try {
+            failedDownloadRepository.deleteById(id);
+        } catch (DataAccessException e) {
+            log.warn("Failed to remove retried download {}: {}", id, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.url_media_save.db.service;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.db.entity.UrlRequestEntity;
+import com.example.url_media_save.db.mapper.UrlMapper;
+import com.example.url_media_save.db.repository.DownloadLedgerRepository;
+import com.example.url_media_save.db.repository.UrlRepository;
+import com.example.url_media_save.dto.DownloadLedgerEntryDto;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Writes request records in the background, so the database is not on the request path.
+ * <p>
+ * Every write queues a snapshot of the record. A single writer thread takes up to
+ * {@link MediaSaverConfig#getAuditBatchSize()} snapshots at a time and keeps only the latest one per record,
+ * so a request that finishes before its insert is written costs a single insert. New records are inserted
+ * with sequence ids, which lets Hibernate send them as one JDBC batch. Records written before are loaded
+ * with one query and updated in one batch.
+ * <p>
+ * The record passed by the caller serves as a handle: its id is set once the insert is committed and
+ * is only read by writes, which are serialized.
+ * <p>
+ * Download ledger entries of a request are queued the same way and written after the records of their batch,
+ * so they get the id of a record that was queued before them.
+ */
+@Slf4j
+@Component
+public class RequestAuditWriter {
+    private static final long POLL_MS = 500;
+
+    private final UrlRepository urlRepository;
+    private final DownloadLedgerRepository downloadLedgerRepository;
+    private final UrlMapper urlMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final long shutdownTimeoutMs;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public RequestAuditWriter(UrlRepository urlRepository, DownloadLedgerRepository downloadLedgerRepository,
+                              UrlMapper urlMapper, PlatformTransactionManager transactionManager, MediaSaverConfig config) {
+        this.urlRepository = urlRepository;
+        this.downloadLedgerRepository = downloadLedgerRepository;
+        this.urlMapper = urlMapper;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = Math.max(1, config.getAuditBatchSize());
+        this.shutdownTimeoutMs = config.getAuditShutdownTimeoutMs();
+        this.queue = new ArrayBlockingQueue<>(config.getAuditQueueCapacity());
+        this.writer = Thread.ofPlatform().name("request-audit-writer").daemon().start(this::run);
+    }
+
+    /**
+     * Queues the current state of the record, blocking only while the queue is full
+     * @param record Record to insert or update
+     */
+    public void write(UrlRequestEntity record) {
+        enqueue(new RecordWrite(record, urlMapper.snapshot(record)));
+    }
+
+    /**
+     * Queues ledger entries of a request, blocking only while the queue is full
+     * @param record Record of the request, queued with {@link #write(UrlRequestEntity)} before
+     * @param entries Entries to append, owned by the writer from now on
+     */
+    public void writeLedger(UrlRequestEntity record, List<DownloadLedgerEntryDto> entries) {
+        enqueue(new LedgerWrite(record, entries));
+    }
+
+    private void enqueue(PendingWrite write) {
+        if (running) {
+            try {
+                queue.put(write);
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // The writer is gone or the caller cannot wait for it
+        flush(List.of(write));
+    }
+
+    private void run() {
+        List<PendingWrite> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(POLL_MS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Request audit writer failed: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes the latest state of every record in one transaction. A failed batch is logged and dropped,
+     * like other bookkeeping writes, its records are inserted again by their next write.
+     */
+    private synchronized void flush(List<PendingWrite> writes) {
+        Map<UrlRequestEntity, UrlRequestEntity> latest = new IdentityHashMap<>();
+        List<LedgerWrite> ledgerWrites = new ArrayList<>();
+        for (PendingWrite write : writes) {
+            switch (write) {
+                case RecordWrite recordWrite -> latest.put(recordWrite.record(), recordWrite.snapshot());
+                case LedgerWrite ledgerWrite -> ledgerWrites.add(ledgerWrite);
+            }
+        }
+        if (!latest.isEmpty()) {
+            flushRecords(latest);
+        }
+        if (!ledgerWrites.isEmpty()) {
+            flushLedger(ledgerWrites);
+        }
+    }
+
+    private void flushRecords(Map<UrlRequestEntity, UrlRequestEntity> latest) {
+        Map<UrlRequestEntity, UrlRequestEntity> inserted = new IdentityHashMap<>();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                List<Long> writtenIds = latest.keySet().stream()
+                        .map(UrlRequestEntity::getId)
+                        .filter(Objects::nonNull)
+                        .toList();
+                Map<Long, UrlRequestEntity> stored = urlRepository.findAllById(writtenIds).stream()
+                        .collect(Collectors.toMap(UrlRequestEntity::getId, Function.identity()));
+                latest.forEach((record, snapshot) -> {
+                    UrlRequestEntity managed = record.getId() != null ? stored.get(record.getId()) : null;
+                    if (managed != null) {
+                        // Changes of managed records are flushed as one batch of updates on commit
+                        urlMapper.updateState(managed, snapshot);
+                    } else {
+                        snapshot.setId(null);
+                        inserted.put(record, snapshot);
+                    }
+                });
+                urlRepository.saveAll(inserted.values());
+            });
+        } catch (DataAccessException | TransactionException e) {
+            log.warn("Failed to write {} request records: {}", latest.size(), e.getMessage());
+            return;
+        }
+        inserted.forEach((record, snapshot) -> record.setId(snapshot.getId()));
+    }
+
+    /**
+     * Appends the entries of all ledger writes with one COPY.
+     * Entries of a request whose record could not be written are kept without a request id.
+     */
+    private void flushLedger(List<LedgerWrite> ledgerWrites) {
+        List<DownloadLedgerEntryDto> entries = new ArrayList<>();
+        for (LedgerWrite ledgerWrite : ledgerWrites) {
+            Long requestId = ledgerWrite.record().getId();
+            ledgerWrite.entries().forEach(entry -> entry.setRequestId(requestId));
+            entries.addAll(ledgerWrite.entries());
+        }
+        try {
+            downloadLedgerRepository.insert(entries);
+        } catch (DataAccessException e) {
+            log.warn("Failed to write {} download ledger entries: {}", entries.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        running = false;
+        writer.join(shutdownTimeoutMs);
+        if (!queue.isEmpty()) {
+            log.warn("{} request records were not written before shutdown", queue.size());
+        }
+    }
+
+    private sealed interface PendingWrite permits RecordWrite, LedgerWrite {
+    }
+
+    /**
+     * @param record Record of the caller, its id tells whether the row exists
+     * @param snapshot State of the record when it was queued
+     */
+    private record RecordWrite(UrlRequestEntity record, UrlRequestEntity snapshot) implements PendingWrite {
+    }
+
+    private record LedgerWrite(UrlRequestEntity record, List<DownloadLedgerEntryDto> entries) implements PendingWrite {
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.url_media_save.db.service;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Bloom filter of the URLs in the url cache, kept in a memory-mapped file.
+ * <p>
+ * Most links of a crawl were never downloaded before, so the cache lookup of every link is mostly a database
+ * round trip that finds nothing. The filter answers "never seen" for those from memory, only links it may
+ * have seen are looked up. It is sized for {@link MediaSaverConfig#getSeenUrlFilterExpectedUrls()} URLs at
+ * {@link MediaSaverConfig#getSeenUrlFilterFalsePositiveRate()}, about 1.2 bytes per URL at 1%.
+ * <p>
+ * Bits are set with atomic updates directly in the mapping, the OS writes them back to the file, so the filter
+ * survives restarts without being reloaded. A new filter file is filled from the url cache table once
+ * ({@link UrlCacheService}), until then it is incomplete and every lookup goes to the database.
+ */
+@Slf4j
+@Component
+public class SeenUrlFilter {
+    private static final long MAGIC = 0x4d53_5345_454e_5531L;
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 64;
+    private static final int HASHES_OFFSET = 12;
+    private static final int BITS_OFFSET = 16;
+    private static final int COUNT_OFFSET = 24;
+    private static final int COMPLETE_OFFSET = 32;
+    private static final long SEED_1 = 0x9e37_79b9_7f4a_7c15L;
+    private static final long SEED_2 = 0xc2b2_ae3d_27d4_eb4fL;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private final boolean enabled;
+    private final long expectedUrls;
+    private final int hashes;
+    private final long bits;
+    private final MappedByteBuffer buffer;
+    private volatile boolean complete;
+    private volatile boolean overfullReported;
+
+    public SeenUrlFilter(MediaSaverConfig config) {
+        this.enabled = config.isSeenUrlFilterEnabled();
+        this.expectedUrls = Math.max(1, config.getSeenUrlFilterExpectedUrls());
+        double falsePositiveRate = config.getSeenUrlFilterFalsePositiveRate();
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("seen-url-filter-false-positive-rate must be between 0 and 1");
+        }
+        long optimalBits = (long) Math.ceil(-expectedUrls * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        this.bits = (optimalBits + Long.SIZE - 1) / Long.SIZE * Long.SIZE;
+        this.hashes = Math.max(1, (int) Math.round((double) bits / expectedUrls * Math.log(2)));
+        if (HEADER_BYTES + bits / Byte.SIZE > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Seen URL filter for " + expectedUrls + " URLs does not fit into one 2 GB mapping");
+        }
+        this.buffer = enabled ? map(Path.of(config.getSeenUrlFilterFile())) : null;
+        this.complete = enabled && buffer.getInt(COMPLETE_OFFSET) == 1;
+    }
+
+    private MappedByteBuffer map(Path file) {
+        long size = HEADER_BYTES + bits / Byte.SIZE;
+        try {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                boolean reuse = channel.size() == size;
+                MappedByteBuffer mapped = null;
+                if (reuse) {
+                    mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                    mapped.order(ByteOrder.LITTLE_ENDIAN);
+                    reuse = mapped.getLong(0) == MAGIC && mapped.getInt(8) == VERSION
+                            && mapped.getInt(HASHES_OFFSET) == hashes && mapped.getLong(BITS_OFFSET) == bits;
+                }
+                if (!reuse) {
+                    if (channel.size() > 0) {
+                        log.warn("Seen URL filter {} was built with other settings, building it again", file);
+                    }
+                    // Truncating first makes the mapping start out zeroed
+                    channel.truncate(0);
+                    mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                    mapped.order(ByteOrder.LITTLE_ENDIAN);
+                    mapped.putLong(0, MAGIC);
+                    mapped.putInt(8, VERSION);
+                    mapped.putInt(HASHES_OFFSET, hashes);
+                    mapped.putLong(BITS_OFFSET, bits);
+                    mapped.force();
+                }
+                log.info("Seen URL filter {}: {} MB, {} hashes, about {} URLs recorded", file,
+                        size / (1024 * 1024), hashes, mapped.getLong(COUNT_OFFSET));
+                // The mapping stays valid after its channel is closed
+                return mapped;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot map the seen URL filter " + file, e);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return true if the filter holds every URL of the url cache, so that its "never seen" answers can be trusted
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * Marks the filter as holding every URL of the url cache, also for the following starts
+     */
+    void markComplete() {
+        buffer.putInt(COMPLETE_OFFSET, 1);
+        buffer.force();
+        complete = true;
+    }
+
+    /**
+     * @param url Media URL
+     * @return false only if the URL was certainly never added, true if it may have been or the filter cannot tell
+     */
+    public boolean mightContain(String url) {
+        if (!complete) {
+            return true;
+        }
+        long hash1 = hash(url, SEED_1);
+        // Never zero, otherwise all positions of a URL would be the same bit
+        long hash2 = hash(url, SEED_2) | 1;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bits);
+            long word = (long) LONGS.getVolatile(buffer, wordOffset(bit));
+            if ((word & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Records the URL, safe to call from many threads
+     * @param url Media URL
+     */
+    public void add(String url) {
+        if (!enabled) {
+            return;
+        }
+        long hash1 = hash(url, SEED_1);
+        // Never zero, otherwise all positions of a URL would be the same bit
+        long hash2 = hash(url, SEED_2) | 1;
+        boolean added = false;
+        for (int i = 0; i < hashes; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, bits);
+            long mask = 1L << bit;
+            long previous = (long) LONGS.getAndBitwiseOr(buffer, wordOffset(bit), mask);
+            added |= (previous & mask) == 0;
+        }
+        if (added) {
+            long count = (long) LONGS.getAndAdd(buffer, COUNT_OFFSET, 1L) + 1;
+            if (count > expectedUrls && !overfullReported) {
+                overfullReported = true;
+                log.warn("Seen URL filter holds more than {} URLs, its false positive rate grows, raise seen-url-filter-expected-urls",
+                        expectedUrls);
+            }
+        }
+    }
+
+    private static int wordOffset(long bit) {
+        return HEADER_BYTES + (int) (bit >>> 6) * Long.BYTES;
+    }
+
+    /**
+     * 64-bit FNV-1a over the chars of the URL with a murmur finalizer, two seeds give the two hashes
+     * that all filter positions are derived from
+     */
+    private static long hash(String url, long seed) {
+        long hash = seed;
+        for (int i = 0; i < url.length(); i++) {
+            hash ^= url.charAt(i);
+            hash *= 0x100_0000_01b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51_afd7_ed55_8ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ce_b9fe_1a85_ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @PreDestroy
+    void close() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+}
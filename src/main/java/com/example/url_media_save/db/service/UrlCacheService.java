@@ -0,0 +1,103 @@
+package com.example.url_media_save.db.service;
+
+import com.example.url_media_save.db.entity.UrlCacheEntity;
+import com.example.url_media_save.db.repository.UrlCacheRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * HTTP cache validators of downloaded files, used to re-download a URL only if it has changed.
+ * It is only a cache: when the database is unavailable files are simply downloaded again.
+ * Lookups of URLs the {@link SeenUrlFilter} has never seen are answered without the database.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class UrlCacheService {
+    private static final int SEED_PAGE_SIZE = 10000;
+
+    private final UrlCacheRepository urlCacheRepository;
+    private final SeenUrlFilter seenUrlFilter;
+
+    /**
+     * @param url Media URL
+     * @return Cache entry of the URL if its local copy still exists
+     */
+    public Optional<UrlCacheEntity> find(String url) {
+        if (!seenUrlFilter.mightContain(url)) {
+            return Optional.empty();
+        }
+        try {
+            return urlCacheRepository.findById(url)
+                    .filter(cached -> Files.exists(Path.of(cached.getPath())));
+        } catch (DataAccessException e) {
+            log.warn("Url cache unavailable: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    public void save(String url, String etag, String lastModified, Long contentLength, String path) {
+        if (etag == null && lastModified == null) {
+            return;
+        }
+        try {
+            urlCacheRepository.upsert(url, etag, lastModified, contentLength, path);
+            seenUrlFilter.add(url);
+        } catch (DataAccessException e) {
+            log.warn("Failed to cache validators of {}: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Points the URL to another local copy, e.g. when its file was replaced by an already stored duplicate
+     */
+    public void updatePath(String url, String path) {
+        try {
+            urlCacheRepository.updatePath(url, path);
+        } catch (DataAccessException e) {
+            log.warn("Failed to update cached path of {}: {}", url, e.getMessage());
+        }
+    }
+
+    /**
+     * Fills a new seen URL filter with the URLs already in the cache, in the background.
+     * URLs cached meanwhile are added by {@link #save}, the filter is used once the whole table was read.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    void seedSeenUrlFilter() {
+        if (seenUrlFilter.isEnabled() && !seenUrlFilter.isComplete()) {
+            Thread.ofVirtual().name("seen-url-filter-seed").start(this::seed);
+        }
+    }
+
+    private void seed() {
+        long seeded = 0;
+        try {
+            String after = "";
+            List<String> urls;
+            do {
+                urls = urlCacheRepository.findUrlsAfter(after, SEED_PAGE_SIZE);
+                urls.forEach(seenUrlFilter::add);
+                seeded += urls.size();
+                if (!urls.isEmpty()) {
+                    after = urls.getLast();
+                }
+            } while (urls.size() == SEED_PAGE_SIZE);
+        } catch (DataAccessException e) {
+            log.warn("Failed to fill the seen URL filter after {} URLs, it is filled again on the next start: {}",
+                    seeded, e.getMessage());
+            return;
+        }
+        seenUrlFilter.markComplete();
+        log.info("Seen URL filter filled with {} cached URLs", seeded);
+    }
+}
@@ -1,28 +1,46 @@
 package com.example.url_media_save.db.service;
 
+import com.example.url_media_save.config.MediaSaverConfig;
 import com.example.url_media_save.db.mapper.UrlMapper;
-import com.example.url_media_save.db.repository.UrlRepository;
 import com.example.url_media_save.dto.UrlRequestDto;
+import com.example.url_media_save.service.crawl.CrawlListener;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 import com.example.url_media_save.db.entity.UrlRequestEntity;
 
+/**
+ * Records every /mediaget request and its result.
+ * Records are written by the {@link RequestAuditWriter} in the background, the returned entity gets its id
+ * once its insert is committed.
+ */
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class UrlService {
-    private final UrlRepository urlRepository;
+    private final RequestAuditWriter requestAuditWriter;
     private final UrlMapper urlMapper;
+    private final MediaSaverConfig config;
 
     public UrlRequestEntity save(UrlRequestDto urlRequestDto) {
-       return urlRepository.save(urlMapper.toEntity(urlRequestDto));
+        UrlRequestEntity entity = urlMapper.toEntity(urlRequestDto);
+        requestAuditWriter.write(entity);
+        return entity;
     }
 
-    @Transactional
     public void saveResultInfo(UrlRequestEntity entity, Long requiredTimeMs, Integer deleteDuplicates, Integer totalProcessed, Integer totalSuccessful, Integer totalFailed) {
         urlMapper.updateResultFields(entity, requiredTimeMs, deleteDuplicates, totalProcessed, totalSuccessful, totalFailed);
-        urlRepository.save(entity);
+        requestAuditWriter.write(entity);
+    }
+
+    /**
+     * Creates the listener that records every file of the request in the download ledger
+     * @param entity Record returned by {@link #save(UrlRequestDto)}
+     * @param delegate Listener that receives the crawl progress as well
+     * @return Listener to pass to the crawl, close it when the crawl is over
+     */
+    public DownloadLedgerRecorder ledger(UrlRequestEntity entity, CrawlListener delegate) {
+        return new DownloadLedgerRecorder(requestAuditWriter, entity, delegate,
+                config.isDownloadLedgerEnabled(), config.getDownloadLedgerChunkSize());
     }
 }
@@ -0,0 +1,28 @@
+package com.example.url_media_save.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of a single file of a request, as stored in the download ledger
+ */
+@Data
+@Builder
+public class DownloadLedgerEntryDto {
+    /**
+     * Id of the request record, set when the entry is written
+     */
+    private Long requestId;
+    private String url;
+    private String host;
+    private FileResultDto.Outcome status;
+    private Long sizeBytes;
+    private String digest;
+    /**
+     * Time spent on the file, from the first request to the committed file
+     */
+    private long latencyMs;
+    private LocalDateTime finishedTime;
+}
@@ -12,6 +12,15 @@ public class DownloadResultDto {
     private List<String> failedDownloads;
     private List<String> invalidUrls;
     private List<String> urlsWithoutExtension;
+    private List<SavedFileDto> savedFiles;
+    /**
+     * URLs whose previously downloaded copy the server reported as unchanged
+     */
+    private List<String> notModified;
+    /**
+     * URLs rejected for being below the minimum file size, nothing was written for them
+     */
+    private List<String> tooSmall;
     private int totalProcessed;
     private int totalSuccessful;
     private int totalFailed;
@@ -0,0 +1,32 @@
+package com.example.url_media_save.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Outcome of a single link of a job, streamed to the client as soon as it is known
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class FileResultDto {
+    private String url;
+    private Outcome outcome;
+    private String path;
+    private Long sizeBytes;
+    /**
+     * Path of the already stored copy with the same content
+     */
+    private String duplicateOf;
+
+    public enum Outcome {
+        SAVED,
+        DUPLICATE,
+        NOT_MODIFIED,
+        TOO_SMALL,
+        FAILED,
+        INVALID,
+        NO_EXTENSION
+    }
+}
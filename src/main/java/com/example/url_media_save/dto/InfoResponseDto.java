@@ -9,8 +9,13 @@ import java.util.List;
 @Builder
 public class InfoResponseDto {
     private Integer searchFiles;
+    /**
+     * Found links skipped because the same normalized link was already downloaded in this crawl
+     */
+    private Integer repeatedLinks;
     private Integer downloadFiles;
     private Integer deleteDuplicates;
+    private Long bytesReclaimed;
     private Long requiredTimeMs;
     private String fromUrl;
 
@@ -19,7 +24,13 @@ public class InfoResponseDto {
     private Integer totalFailed;
     private Integer invalidUrls;
     private Integer urlsWithoutExtension;
+    private Integer notModified;
+    private Integer tooSmall;
     private List<String> failedDownloadUrls;
     private List<String> invalidUrlList;
     private List<String> urlsWithoutExtensionList;
+
+    private Long httpRequests;
+    private Long tlsHandshakes;
+    private Long handshakesAvoided;
 }
@@ -0,0 +1,20 @@
+package com.example.url_media_save.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Element of the result stream of a job: a file result, or the final job status that ends the stream
+ */
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JobEventDto {
+    public static final String FILE = "file";
+    public static final String FINISHED = "finished";
+
+    private String type;
+    private FileResultDto file;
+    private JobStatusDto job;
+}
@@ -0,0 +1,33 @@
+package com.example.url_media_save.dto;
+
+import com.example.url_media_save.service.job.JobStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class JobStatusDto {
+    private String jobId;
+    private JobStatus status;
+    private String url;
+    private LocalDateTime createdTime;
+    private LocalDateTime startedTime;
+    private LocalDateTime finishedTime;
+
+    private Integer pagesProcessed;
+    private Integer linksFound;
+    private Integer filesProcessed;
+    private Integer filesSaved;
+    private Integer filesFailed;
+    private Long bytesSaved;
+
+    /**
+     * Final statistics, set once the job is completed
+     */
+    private InfoResponseDto result;
+    private String error;
+}
@@ -0,0 +1,20 @@
+package com.example.url_media_save.dto;
+
+import lombok.Builder;
+import lombok.Data;
+
+@Data
+@Builder
+public class SavedFileDto {
+    private String url;
+    private String path;
+    private long sizeBytes;
+    /**
+     * Hex content digest computed while the file was written
+     */
+    private String digest;
+    /**
+     * Path of the already stored copy with the same content, if the file was deduplicated against the content index
+     */
+    private String duplicateOf;
+}
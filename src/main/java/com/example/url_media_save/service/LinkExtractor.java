@@ -0,0 +1,97 @@
+package com.example.url_media_save.service;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Incremental link extractor.
+ * Reads the page in fixed-size chunks and matches the precompiled patterns against a sliding window,
+ * so memory stays bounded by {@link #CHUNK_SIZE} + {@link #MAX_LINK_LENGTH} characters whatever the page size,
+ * and every link is handed to the consumer as soon as it is complete.
+ */
+public final class LinkExtractor {
+    /**
+     * Relative links to hosted files, resolved against the site URL
+     */
+    static final Pattern FILE_PATH_PATTERN = Pattern.compile("/file/[a-zA-Z0-9]*\\.\\w+");
+    /**
+     * Scheme-relative links, prefixed with https:
+     */
+    static final Pattern SCHEMELESS_URL_PATTERN =
+            Pattern.compile("//([\\w_-]+(?:(?:\\.[\\w_-]+)+))([\\w.,@?^=%&:/~+#-]*[\\w@?^=%&/~+#-])");
+    static final int CHUNK_SIZE = 8192;
+    /**
+     * Longest link that is still guaranteed to be matched in one piece when it crosses a chunk boundary
+     */
+    static final int MAX_LINK_LENGTH = 2048;
+
+    private final Pattern[] patterns = {FILE_PATH_PATTERN, SCHEMELESS_URL_PATTERN};
+    private final String[] prefixes;
+    private final Consumer<String> linkConsumer;
+    private final int[] resumeAt = new int[patterns.length];
+    private final StringBuilder window = new StringBuilder(CHUNK_SIZE + MAX_LINK_LENGTH);
+
+    private LinkExtractor(String cleanUrl, Consumer<String> linkConsumer) {
+        this.prefixes = new String[]{cleanUrl, "https:"};
+        this.linkConsumer = linkConsumer;
+    }
+
+    /**
+     * Reads the page to the end, passing every found link to the consumer
+     * @param page Page content
+     * @param cleanUrl Site URL that relative file links are resolved against
+     * @param linkConsumer Receives links in the order they are completed
+     * @throws IOException if reading the page fails
+     */
+    public static void extract(Reader page, String cleanUrl, Consumer<String> linkConsumer) throws IOException {
+        new LinkExtractor(cleanUrl, linkConsumer).run(page);
+    }
+
+    private void run(Reader page) throws IOException {
+        char[] chunk = new char[CHUNK_SIZE];
+        boolean endOfPage = false;
+        while (!endOfPage) {
+            int read = page.read(chunk);
+            if (read == -1) {
+                endOfPage = true;
+            } else {
+                window.append(chunk, 0, read);
+            }
+            int keepFrom = window.length();
+            for (int i = 0; i < patterns.length; i++) {
+                resumeAt[i] = scan(patterns[i], prefixes[i], resumeAt[i], endOfPage);
+                keepFrom = Math.min(keepFrom, resumeAt[i]);
+            }
+            window.delete(0, keepFrom);
+            for (int i = 0; i < resumeAt.length; i++) {
+                resumeAt[i] -= keepFrom;
+            }
+        }
+    }
+
+    /**
+     * Emits all complete matches of the pattern starting at or after {@code from}
+     * @return Position the next scan of this pattern has to start from
+     */
+    private int scan(Pattern pattern, String prefix, int from, boolean endOfPage) {
+        Matcher matcher = pattern.matcher(window);
+        matcher.region(from, window.length());
+        int scannedTo = from;
+        while (matcher.find()) {
+            // A match touching the end of the window may still grow with the next chunk
+            if (!endOfPage && matcher.hitEnd() && matcher.end() - matcher.start() < MAX_LINK_LENGTH) {
+                return matcher.start();
+            }
+            linkConsumer.accept(prefix + matcher.group());
+            scannedTo = matcher.end();
+        }
+        if (endOfPage) {
+            return window.length();
+        }
+        // The tail may hold the beginning of a link that is completed by the next chunk
+        return Math.max(scannedTo, window.length() - MAX_LINK_LENGTH);
+    }
+}
@@ -1,65 +1,80 @@
 package com.example.url_media_save.service;
 
+import com.example.url_media_save.service.http.HttpTransport;
+import com.example.url_media_save.service.metrics.MediaMetrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
+import java.io.Reader;
+import java.io.StringReader;
+import java.net.http.HttpResponse;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
 @Slf4j
 @Service
+@RequiredArgsConstructor
 public class MediaParser {
+    private final HttpTransport httpTransport;
+    private final MediaMetrics metrics;
+
     /**
-     * Returns the site as a string
+     * Reads the page body while it arrives and passes every link to the consumer as soon as it is found
+     * @param response Page response, its body is closed when the page has been read
+     * @param cleanUrl Site URL that relative file links are resolved against
+     * @param linkConsumer Receives the found links
+     * @return Number of links found
+     * @throws IOException if reading the page fails
      */
-    @SneakyThrows
-    public String getWebPageParse(HttpURLConnection connection) {
-        BufferedReader in = new BufferedReader(
-                new InputStreamReader(connection.getInputStream()));
-        StringBuilder webParse = new StringBuilder();
-        String now;
-        while ((now = in.readLine()) != null) {
-            webParse.append(now);
+    public int streamUrlsFromPage(HttpResponse<InputStream> response, String cleanUrl, Consumer<String> linkConsumer) throws IOException {
+        int[] found = new int[1];
+        Timer.Sample sample = Timer.start();
+        try (Reader page = new InputStreamReader(httpTransport.bodyOf(response), charsetOf(response))) {
+            LinkExtractor.extract(page, cleanUrl, link -> {
+                found[0]++;
+                linkConsumer.accept(link);
+            });
+        } finally {
+            sample.stop(metrics.pageParseTime());
         }
-//        log.trace("Page Parse: {}", webParse);
-        return webParse.toString();
+        log.info("Files to download from {}: {}", response.uri(), found[0]);
+        return found[0];
     }
 
     /**
      * Returns a list with all links contained in the input
      */
+    @SneakyThrows
     public List<String> extractUrlsFromPage(String webPageParse, String cleanUrl) {
         List<String> containedUrls = new ArrayList<>();
-//        String urlRegex = "((https?|ftp|gopher|telnet|file):((//)|(\\\\))+[\\w\\d:#@%/;$()~_?\\+-=\\\\\\.&]*)";
-//        Pattern patternUrl = Pattern.compile("(http|ftp|https):\\/\\/([\\w_-]+(?:(?:\\.[\\w_-]+)+))([\\w.,@?^=%&:\\/~+#-]*[\\w@?^=%&\\/~+#-])");
-        matchingUrlWithoutSiteName(webPageParse, containedUrls, cleanUrl);
-        matchingUrlWithoutHttp(webPageParse, containedUrls);
+        Timer.Sample sample = Timer.start();
+        LinkExtractor.extract(new StringReader(webPageParse), cleanUrl, containedUrls::add);
+        sample.stop(metrics.pageParseTime());
         log.info("Valid url in file: " + containedUrls);
         log.info("Files to download: " + containedUrls.size());
         return containedUrls;
     }
 
-    private void matchingUrlWithoutHttp(String text, List<String> containedUrls) {
-        Pattern patternUrlWithoutHttp = Pattern.compile("\\/\\/([\\w_-]+(?:(?:\\.[\\w_-]+)+))([\\w.,@?^=%&:\\/~+#-]*[\\w@?^=%&\\/~+#-])");
-        Matcher withoutHttpMatcher = patternUrlWithoutHttp.matcher(text);
-        while (withoutHttpMatcher.find()) {
-            containedUrls.add("https:" + text.substring(withoutHttpMatcher.start(0),
-                    withoutHttpMatcher.end(0)));
-        }
-    }
-
-    private void matchingUrlWithoutSiteName(String text, List<String> containedUrls, String cleanUrl) {
-        Pattern patternVideo = Pattern.compile("/file/[a-zA-Z0-9]*\\.\\w+");
-        Matcher videoMatcher = patternVideo.matcher(text);
-        while (videoMatcher.find()) {
-            containedUrls.add(cleanUrl + text.substring(videoMatcher.start(0),
-                    videoMatcher.end(0)));
+    private static Charset charsetOf(HttpResponse<?> response) {
+        String contentType = response.headers().firstValue("Content-Type").orElse("");
+        int charsetStart = contentType.toLowerCase().indexOf("charset=");
+        if (charsetStart != -1) {
+            String name = contentType.substring(charsetStart + "charset=".length()).split(";", 2)[0].trim().replace("\"", "");
+            try {
+                return Charset.forName(name);
+            } catch (IllegalArgumentException e) {
+                log.debug("Unknown page charset {}", name);
+            }
         }
+        return StandardCharsets.UTF_8;
     }
 }
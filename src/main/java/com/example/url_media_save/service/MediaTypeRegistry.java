@@ -0,0 +1,191 @@
+package com.example.url_media_save.service;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.config.MediaSaverConfig.MediaTypeDefinition;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Media types that are saved, configured by {@link MediaSaverConfig#getMediaTypes()}.
+ * A type is recognised by the extension of the URL, by the Content-Type of the response or by a signature
+ * at the start of the content. Extensions and content types are hash lookups, signatures are indexed
+ * by their first byte, so only the few signatures starting with the sniffed byte are compared.
+ */
+@Component
+public class MediaTypeRegistry {
+    /**
+     * Content types servers send when they do not know better, the content decides then
+     */
+    private static final Set<String> GENERIC_CONTENT_TYPES = Set.of("application/octet-stream", "binary/octet-stream");
+
+    private final Map<String, MediaType> byExtension = new HashMap<>();
+    private final Map<String, MediaType> byContentType = new HashMap<>();
+    @SuppressWarnings("unchecked")
+    private final List<Signature>[] signaturesByFirstByte = new List[256];
+    /**
+     * Signatures whose first byte is a wildcard
+     */
+    private final List<Signature> signaturesAnyFirstByte = new ArrayList<>();
+    private int sniffLength;
+
+    public MediaTypeRegistry(MediaSaverConfig config) {
+        for (MediaTypeDefinition definition : config.getMediaTypes()) {
+            if (definition.getExtensions().isEmpty()) {
+                throw new IllegalArgumentException("Media type without extension: " + definition);
+            }
+            MediaType type = new MediaType(definition.getExtensions().getFirst().trim().toLowerCase(Locale.ROOT));
+            definition.getExtensions().forEach(extension -> byExtension.put(extension.trim().toLowerCase(Locale.ROOT), type));
+            definition.getContentTypes().forEach(contentType -> byContentType.put(mimeType(contentType), type));
+            definition.getMagic().forEach(magic -> addSignature(Signature.parse(magic, type)));
+        }
+    }
+
+    private void addSignature(Signature signature) {
+        sniffLength = Math.max(sniffLength, signature.bytes().length);
+        if (signature.mask()[0] == 0) {
+            signaturesAnyFirstByte.add(signature);
+            return;
+        }
+        int firstByte = signature.bytes()[0] & 0xFF;
+        if (signaturesByFirstByte[firstByte] == null) {
+            signaturesByFirstByte[firstByte] = new ArrayList<>(2);
+        }
+        signaturesByFirstByte[firstByte].add(signature);
+    }
+
+    /**
+     * @param extension Extension with the dot, as returned by {@link #urlExtension(String)}
+     * @return Media type saved under this extension
+     */
+    public Optional<MediaType> byExtension(String extension) {
+        return extension.isEmpty() ? Optional.empty() : Optional.ofNullable(byExtension.get(extension));
+    }
+
+    /**
+     * @param contentType Value of the Content-Type header, parameters are ignored, may be null
+     * @return Media type served with this content type
+     */
+    public Optional<MediaType> byContentType(String contentType) {
+        return contentType == null ? Optional.empty() : Optional.ofNullable(byContentType.get(mimeType(contentType)));
+    }
+
+    /**
+     * @param contentType Value of the Content-Type header, may be null
+     * @return true if the content type does not tell what the content is, so it has to be sniffed
+     */
+    public boolean isGeneric(String contentType) {
+        return contentType == null || contentType.isBlank() || GENERIC_CONTENT_TYPES.contains(mimeType(contentType));
+    }
+
+    /**
+     * @param head First bytes of the content, at least {@link #sniffLength()} unless the content is shorter
+     * @param length Number of valid bytes in {@code head}
+     * @return Media type whose signature the content starts with
+     */
+    public Optional<MediaType> byContent(byte[] head, int length) {
+        if (length == 0) {
+            return Optional.empty();
+        }
+        List<Signature> candidates = signaturesByFirstByte[head[0] & 0xFF];
+        if (candidates != null) {
+            for (Signature signature : candidates) {
+                if (signature.matches(head, length)) {
+                    return Optional.of(signature.type());
+                }
+            }
+        }
+        for (Signature signature : signaturesAnyFirstByte) {
+            if (signature.matches(head, length)) {
+                return Optional.of(signature.type());
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * @return Number of leading bytes {@link #byContent(byte[], int)} needs to see
+     */
+    public int sniffLength() {
+        return sniffLength;
+    }
+
+    /**
+     * Extension of the last path segment of the URL, query and fragment are ignored
+     * @param url The URL, absolute or a path
+     * @return Extension with the dot in lowercase, "" if the last segment has none
+     */
+    public static String urlExtension(String url) {
+        int scheme = url.indexOf("://");
+        int authority = url.startsWith("//") ? 2 : scheme == -1 ? -1 : scheme + 3;
+        int pathStart = authority == -1 ? 0 : url.indexOf('/', authority);
+        if (pathStart == -1) {
+            return "";
+        }
+        int pathEnd = url.length();
+        for (int i = pathStart; i < url.length(); i++) {
+            char c = url.charAt(i);
+            if (c == '?' || c == '#') {
+                pathEnd = i;
+                break;
+            }
+        }
+        int dot = url.lastIndexOf('.', pathEnd - 1);
+        if (dot <= url.lastIndexOf('/', pathEnd - 1) || dot == pathEnd - 1) {
+            return "";
+        }
+        return url.substring(dot, pathEnd).toLowerCase(Locale.ROOT);
+    }
+
+    private static String mimeType(String contentType) {
+        int parameters = contentType.indexOf(';');
+        return (parameters == -1 ? contentType : contentType.substring(0, parameters)).trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @param extension Extension files of this type are saved with
+     */
+    public record MediaType(String extension) {
+    }
+
+    /**
+     * Leading bytes of a media type, bytes with a zero mask match anything
+     */
+    private record Signature(byte[] bytes, byte[] mask, MediaType type) {
+        static Signature parse(String magic, MediaType type) {
+            String hex = magic.trim();
+            if (hex.isEmpty() || hex.length() % 2 != 0) {
+                throw new IllegalArgumentException("Invalid magic bytes " + magic + " of " + type.extension());
+            }
+            byte[] bytes = new byte[hex.length() / 2];
+            byte[] mask = new byte[bytes.length];
+            for (int i = 0; i < bytes.length; i++) {
+                String pair = hex.substring(i * 2, i * 2 + 2);
+                if (!pair.equals("??")) {
+                    bytes[i] = (byte) HexFormat.fromHexDigits(pair);
+                    mask[i] = (byte) 0xFF;
+                }
+            }
+            return new Signature(bytes, mask, type);
+        }
+
+        boolean matches(byte[] head, int length) {
+            if (length < bytes.length) {
+                return false;
+            }
+            for (int i = 0; i < bytes.length; i++) {
+                if ((head[i] & mask[i]) != bytes[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -1,186 +1,225 @@
 package com.example.url_media_save.service;
 
+import com.example.url_media_save.config.MediaSaverConfig;
 import com.example.url_media_save.dto.DownloadResultDto;
 import com.example.url_media_save.dto.InfoResponseDto;
-import com.example.url_media_save.service.duplicate.FileDuplicatesService;
+import com.example.url_media_save.service.crawl.CrawlFrontier;
+import com.example.url_media_save.service.crawl.CrawlListener;
+import com.example.url_media_save.service.crawl.CrawlPage;
+import com.example.url_media_save.service.crawl.CrawlStats;
+import com.example.url_media_save.service.crawl.UrlNormalizer;
+import com.example.url_media_save.service.download.DownloadEngine;
+import com.example.url_media_save.service.download.DownloadPolicy;
+import com.example.url_media_save.service.http.HttpTransport;
+import com.example.url_media_save.service.http.TransportStats;
+import com.example.url_media_save.service.metrics.MediaMetrics;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
-import java.net.HttpURLConnection;
+import java.io.InputStream;
+import java.net.http.HttpResponse;
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class SaveMediaService {
     private final MediaParser mediaParser;
-    private final FileDuplicatesService fileDuplicatesService;
     private final Saver saver;
+    private final DownloadEngine downloadEngine;
+    private final HttpTransport httpTransport;
+    private final UrlNormalizer urlNormalizer;
+    private final MediaTypeRegistry mediaTypeRegistry;
+    private final MediaSaverConfig config;
+    private final MediaMetrics metrics;
 
     /**
-     * Creates a map with URL as key and its file extension as value
-     * @param url The URL to process
-     * @return Map with URL and its extension
+     * Extracts and downloads media files from a given URL
+     * @param baseUrl The base URL to extract media from
+     * @param pathToSave Directory path to save files
+     * @param notSaveFileInKb Minimum file size in KB to save
+     * @param checkNested Whether to check nested URLs
+     * @return InfoResponseDto with download statistics
+     * @throws IOException if connection fails
+     * @throws InterruptedException if the crawl is interrupted
      */
-    private Map<String, String> createUrlExtensionMap(String url) {
-        Map<String, String> urlExtensionMap = new HashMap<>();
-        urlExtensionMap.put(url, saver.getFileExtension(url));
-        return urlExtensionMap;
+    public InfoResponseDto getMediaFromUrl(String baseUrl, String pathToSave, int notSaveFileInKb, Boolean checkNested) throws IOException, InterruptedException {
+        return getMediaFromUrl(baseUrl, pathToSave, notSaveFileInKb, checkNested, CrawlListener.NONE);
     }
 
     /**
-     * Extracts and downloads media files from a given URL
+     * Extracts and downloads media files from a given URL, reporting progress while the crawl runs
      * @param baseUrl The base URL to extract media from
      * @param pathToSave Directory path to save files
      * @param notSaveFileInKb Minimum file size in KB to save
      * @param checkNested Whether to check nested URLs
+     * @param listener Receives every processed page and every finished download
      * @return InfoResponseDto with download statistics
      * @throws IOException if connection fails
+     * @throws InterruptedException if the crawl is interrupted
      */
-    public InfoResponseDto getMediaFromUrl(String baseUrl, String pathToSave, int notSaveFileInKb, Boolean checkNested) throws IOException {
+    public InfoResponseDto getMediaFromUrl(String baseUrl, String pathToSave, int notSaveFileInKb, Boolean checkNested,
+                                           CrawlListener listener) throws IOException, InterruptedException {
         if (!saver.isValidUrl(baseUrl)) {
             throw new IllegalArgumentException("Invalid base URL: " + baseUrl);
         }
         String cleanBaseUrl = baseUrl.substring(0, baseUrl.indexOf("/", 8));
 
         long start = System.currentTimeMillis();
+        TransportStats transportBefore = httpTransport.stats();
         String pathName = Objects.requireNonNullElseGet(pathToSave, () -> "C:/temp/" + baseUrl.substring(baseUrl.lastIndexOf("/")));
-        Integer downloadFiles = 0;
-        List<String> urls;
-        HttpURLConnection connection = null;
-        
-        // Collect all download results
-        List<DownloadResultDto> allDownloadResults = new ArrayList<>();
-        
-        try {
-            connection = UrlConnection.getHttpURLConnection(baseUrl);
+        CrawlStats stats = new CrawlStats(config.getReportMaxUrlsPerCategory());
+        // Small files and repeated content are rejected before they are written, the folder is never rescanned
+        DownloadPolicy policy = new DownloadPolicy(notSaveFileInKb * 1000L);
 
-            // Extract URLs from the main page
-            urls = mediaParser.extractUrlsFromPage(mediaParser.getWebPageParse(connection), cleanBaseUrl);
-            log.debug("URLs from main page: {}", urls);
-
-            // Filter URLs with valid extensions
-            List<String> mediaUrls = urls.stream()
-                    .filter(s -> !saver.getFileExtension(s).isEmpty())
-                    .toList();
-
-            // Download files with valid extensions and get detailed results
-            List<String> nestedUrls = urls.stream()
-                    .parallel()
-                    .map(this::createUrlExtensionMap)
-                    .map(it -> {
-                        DownloadResultDto result = saver.downloadUrlToFileWithDetails(it, pathName);
-                        allDownloadResults.add(result);
-                        return result.getUrlsWithoutExtension();
-                    })
-                    .flatMap(Collection::stream)
-                    .collect(Collectors.toList());
-            
-            log.info("Map of nested URLs {}", nestedUrls);
-            
-            // Process nested URLs if enabled
-            if (Boolean.TRUE.equals(checkNested)) {
-                List<String> collect = nestedUrls.stream()
-                        .filter(s -> s.startsWith(cleanBaseUrl))
-                        .toList();
-                tryToDownloadNested(new LinkedList<>(collect), pathName, cleanBaseUrl, notSaveFileInKb, allDownloadResults);
-            }
-            
-            fileDuplicatesService.deleteFilesSize(pathName, notSaveFileInKb);
+        int maxDepth = Boolean.TRUE.equals(checkNested) ? config.getCrawlMaxDepth() : 0;
+        CrawlFrontier frontier = new CrawlFrontier(urlNormalizer, maxDepth, config.getCrawlMaxPages());
+        frontier.offer(baseUrl, 0);
 
+        // The main page is processed on the request thread so that its failure fails the request
+        CrawlPage mainPage = Objects.requireNonNull(frontier.take());
+        try {
+            processPage(mainPage, frontier, pathName, cleanBaseUrl, policy, stats, listener);
         } finally {
-            if (connection != null) {
-                connection.disconnect();
-            }
+            frontier.done(mainPage);
         }
-
-        // Delete duplicates
-        int deleteDuplicatesNumber = 0;
-        try {
-            deleteDuplicatesNumber = fileDuplicatesService.deleteDuplicatesInFolder(pathName);
-            log.info("Delete duplicates {}", deleteDuplicatesNumber);
-        } catch (Exception e) {
-            log.error("Failed to delete duplicates in folder {}: {}", pathName, e.getMessage(), e);
+        
+        // Process nested URLs if enabled
+        if (Boolean.TRUE.equals(checkNested)) {
+            crawlNested(frontier, pathName, cleanBaseUrl, policy, stats, listener);
+            log.info("Crawled {} pages of {}", frontier.getAcceptedPages(), baseUrl);
         }
-
+        
         Long requiredTime = (System.currentTimeMillis() - start);
+        metrics.crawlDuration().record(requiredTime, TimeUnit.MILLISECONDS);
         log.info("It works: {} ms", requiredTime);
-        
-        // Aggregate download statistics
-        int totalProcessed = allDownloadResults.stream().mapToInt(DownloadResultDto::getTotalProcessed).sum();
-        int totalSuccessful = allDownloadResults.stream().mapToInt(DownloadResultDto::getTotalSuccessful).sum();
-        int totalFailed = allDownloadResults.stream().mapToInt(DownloadResultDto::getTotalFailed).sum();
-        int invalidUrls = allDownloadResults.stream().mapToInt(r -> r.getInvalidUrls().size()).sum();
-        int urlsWithoutExtension = allDownloadResults.stream().mapToInt(r -> r.getUrlsWithoutExtension().size()).sum();
-        
-        List<String> allFailedDownloads = allDownloadResults.stream()
-                .flatMap(r -> r.getFailedDownloads().stream())
-                .collect(Collectors.toList());
-        List<String> allInvalidUrls = allDownloadResults.stream()
-                .flatMap(r -> r.getInvalidUrls().stream())
-                .collect(Collectors.toList());
-        List<String> allUrlsWithoutExtension = allDownloadResults.stream()
-                .flatMap(r -> r.getUrlsWithoutExtension().stream())
-                .collect(Collectors.toList());
-        
-        return InfoResponseDto.builder()
+        TransportStats transportStats = httpTransport.stats().minus(transportBefore);
+        log.info("Sent {} requests over {} TLS handshakes, {} handshakes avoided",
+                transportStats.getRequests(), transportStats.getTlsHandshakes(), transportStats.getHandshakesAvoided());
+
+        InfoResponseDto response = stats.toResponse()
                 .requiredTimeMs(requiredTime)
-                .downloadFiles(totalSuccessful)
                 .fromUrl(baseUrl)
-                .searchFiles(urls.size())
-                .deleteDuplicates(deleteDuplicatesNumber)
-                .totalProcessed(totalProcessed)
-                .totalSuccessful(totalSuccessful)
-                .totalFailed(totalFailed)
-                .invalidUrls(invalidUrls)
-                .urlsWithoutExtension(urlsWithoutExtension)
-                .failedDownloadUrls(allFailedDownloads)
-                .invalidUrlList(allInvalidUrls)
-                .urlsWithoutExtensionList(allUrlsWithoutExtension)
+                .httpRequests(transportStats.getRequests())
+                .tlsHandshakes(transportStats.getTlsHandshakes())
+                .handshakesAvoided(transportStats.getHandshakesAvoided())
                 .build();
+        log.info("Skipped {} duplicates, {} bytes, and {} files below {} KB",
+                response.getDeleteDuplicates(), response.getBytesReclaimed(), response.getTooSmall(), notSaveFileInKb);
+        return response;
     }
 
     /**
-     * Attempts to download media from nested URLs
-     * @param checkUrls Queue of URLs to check
+     * Streams a page, submitting every found link for download as soon as it is parsed, unless the crawl already did.
+     * Links without a media extension on the same site are offered to the frontier as the next crawl level
+     * instead of being downloaded. Those the frontier does not follow are not requested, unless nested pages are
+     * not crawled at all and {@link MediaSaverConfig#isSniffExtensionlessLinks()} is set.
+     * @param page Page to process
+     * @param frontier Frontier of the current crawl
      * @param pathName Directory path to save files
      * @param cleanBaseUrl Base URL for filtering
-     * @param notSaveFileInKb Minimum file size in KB to save
-     * @param allDownloadResults List to collect all download results
+     * @param policy Size and deduplication rules of the current crawl
+     * @param stats Statistics of the current crawl, every download is recorded as soon as it finishes
+     * @param listener Receives the page and its downloads
+     * @throws IOException if the page cannot be fetched or read
      */
-    private void tryToDownloadNested(LinkedList<String> checkUrls, String pathName, String cleanBaseUrl,
-                                     int notSaveFileInKb, List<DownloadResultDto> allDownloadResults) {
-        while (!checkUrls.isEmpty()) {
-            log.debug("Nested url: {}, left urls: {}", checkUrls.getFirst(), checkUrls.size());
-            HttpURLConnection connection = null;
-            String url = checkUrls.poll();
-            List<String> urls;
-            
-            try {
-                connection = UrlConnection.getHttpURLConnection(url);
-
-                urls = mediaParser.extractUrlsFromPage(mediaParser.getWebPageParse(connection), cleanBaseUrl);
-                log.debug("Find in [{}] links to download: {}", url, urls);
-
-                urls.stream()
-                        .parallel()
-                        .map(this::createUrlExtensionMap)
-                        .forEach(it -> {
-                            DownloadResultDto result = saver.downloadUrlToFileWithDetails(it, pathName);
-                            allDownloadResults.add(result);
-                        });
+    private void processPage(CrawlPage page, CrawlFrontier frontier, String pathName, String cleanBaseUrl,
+                             DownloadPolicy policy, CrawlStats stats, CrawlListener listener) throws IOException {
+        HttpResponse<InputStream> response = httpTransport.get(page.getUrl());
+        if (page.getDepth() > 0 && saveAsMedia(page, response, pathName, policy, stats, listener)) {
+            return;
+        }
+        List<CompletableFuture<Void>> downloads = new ArrayList<>();
+        try {
+            int found = mediaParser.streamUrlsFromPage(response, cleanBaseUrl, link -> {
+                // The page regexes and tracking parameters yield the same file under several spellings
+                String download = frontier.claimDownload(link);
+                if (download == null) {
+                    stats.recordRepeatedLink();
+                    return;
+                }
+                CompletableFuture<DownloadResultDto> pending;
+                if (saver.getFileExtension(link).isEmpty() && link.startsWith(cleanBaseUrl)) {
+                    // A page of the site: a followed one that turns out to be a media file is saved from its page
+                    // response, the others are not requested, on an ordinary site they are just more pages
+                    if (frontier.offer(link, page.getDepth() + 1)) {
+                        return;
+                    }
+                    // Without nested crawling the link is never fetched as a page, probing it is the only way to find
+                    // media behind it, when sniffing is enabled
+                    pending = !frontier.followsLinks() && saver.isMediaCandidate(link)
+                            ? downloadEngine.submit(download, pathName, policy)
+                            : downloadEngine.skip(download);
+                } else {
+                    pending = downloadEngine.submit(download, pathName, policy);
+                }
+                downloads.add(pending.thenAccept(result -> {
+                    stats.record(result);
+                    listener.downloadCompleted(result);
+                }));
+            });
+            log.debug("Find in [{}] links to download: {}", page.getUrl(), found);
+            stats.recordLinks(found);
+            listener.pageProcessed(page.getUrl(), found);
+        } finally {
+            // Links found before a failure are already downloading, wait for them to be recorded
+            downloads.forEach(CompletableFuture::join);
+        }
+    }
 
-                fileDuplicatesService.deleteFilesSize(pathName, notSaveFileInKb);
+    /**
+     * Saves the response of a nested page if its Content-Type is a media type, a link without media extension
+     * that was followed as a page costs no second request that way
+     * @return true if the response was a media file and is consumed
+     */
+    private boolean saveAsMedia(CrawlPage page, HttpResponse<InputStream> response, String pathName,
+                                DownloadPolicy policy, CrawlStats stats, CrawlListener listener) {
+        Optional<MediaTypeRegistry.MediaType> type = mediaTypeRegistry.byContentType(
+                response.headers().firstValue("Content-Type").orElse(null));
+        if (type.isEmpty()) {
+            return false;
+        }
+        DownloadResultDto result = saver.saveResponse(page.getUrl(), response, type.get().extension(), pathName, policy);
+        stats.record(result);
+        listener.downloadCompleted(result);
+        return true;
+    }
 
-            } catch (IOException e) {
-                log.error("Failed to process nested URL {}: {}", url, e.getMessage(), e);
-            } finally {
-                if (connection != null) {
-                    connection.disconnect();
-                }
+    /**
+     * Processes the pages of the frontier with {@link MediaSaverConfig#getCrawlParallelism()} parallel workers
+     * until the frontier is exhausted
+     * @param frontier Frontier of the current crawl
+     * @param pathName Directory path to save files
+     * @param cleanBaseUrl Base URL for filtering
+     * @param policy Size and deduplication rules of the current crawl
+     * @param stats Statistics of the current crawl
+     * @param listener Receives every page and its downloads
+     */
+    private void crawlNested(CrawlFrontier frontier, String pathName, String cleanBaseUrl,
+                             DownloadPolicy policy, CrawlStats stats, CrawlListener listener) {
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < config.getCrawlParallelism(); i++) {
+                workers.submit(() -> {
+                    CrawlPage page;
+                    while ((page = frontier.take()) != null) {
+                        log.debug("Nested url: {}, depth: {}", page.getUrl(), page.getDepth());
+                        try {
+                            processPage(page, frontier, pathName, cleanBaseUrl, policy, stats, listener);
+                        } catch (IOException | RuntimeException e) {
+                            // A failed page must not end its worker, the crawl would go on with fewer of them
+                            log.error("Failed to process nested URL {}: {}", page.getUrl(), e.getMessage(), e);
+                        } finally {
+                            frontier.done(page);
+                        }
+                    }
+                    return null;
+                });
             }
         }
     }
@@ -1,33 +1,72 @@
 package com.example.url_media_save.service;
 
 import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.db.entity.UrlCacheEntity;
+import com.example.url_media_save.db.service.FailedDownloadService;
+import com.example.url_media_save.db.service.UrlCacheService;
 import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.dto.SavedFileDto;
+import com.example.url_media_save.service.download.DownloadPolicy;
+import com.example.url_media_save.service.download.RangeNotHonouredException;
+import com.example.url_media_save.service.download.SegmentedDownloader;
+import com.example.url_media_save.service.download.TransferBufferPool;
+import com.example.url_media_save.service.duplicate.ContentDigest;
+import com.example.url_media_save.service.duplicate.KnownContentFilter;
+import com.example.url_media_save.service.http.HttpStatusException;
+import com.example.url_media_save.service.http.HostUnavailableException;
+import com.example.url_media_save.service.http.HttpTransport;
+import com.example.url_media_save.service.metrics.MediaMetrics;
+import com.example.url_media_save.service.metrics.MediaMetrics.DownloadOutcome;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.SequenceInputStream;
 import java.net.URL;
-import java.net.URLConnection;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.GZIPInputStream;
+import java.util.Optional;
+import java.util.OptionalLong;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class Saver {
-    private static final List<String> validExtension = List.of(".jpg", ".jpeg", ".gif", ".mp4", ".mp3", ".png");
+    private static final int HTTP_NOT_MODIFIED = 304;
+    private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+    private static final String PART_SUFFIX = ".part";
+    /**
+     * Longest rejected body that is read to the end to keep the connection alive
+     */
+    private static final long DISCARD_LIMIT = 64 * 1024;
     
     private final MediaSaverConfig config;
+    private final HttpTransport httpTransport;
+    private final UrlCacheService urlCacheService;
+    private final SegmentedDownloader segmentedDownloader;
+    private final TransferBufferPool transferBufferPool;
+    private final KnownContentFilter knownContentFilter;
+    private final FailedDownloadService failedDownloadService;
+    private final MediaMetrics metrics;
+    private final MediaTypeRegistry mediaTypeRegistry;
 
 
     /**
@@ -48,7 +87,6 @@ public class Saver {
      * @return List of URLs that couldn't be downloaded due to missing extensions
      */
     public List<String> downloadUrlToFile(Map<String, String> urlToExtensionMap, String pathName, boolean useUrlAsFileName) {
-        long start = System.currentTimeMillis();
         List<String> checkUrl = new ArrayList<>();
         List<String> failedDownloads = new ArrayList<>();
         try {
@@ -71,17 +109,14 @@ public class Saver {
             } else {
                 try {
                     log.debug("try to save {}", url);
-                    String fileName = useUrlAsFileName ? extractFileNameFromUrl(url, extension) : null;
-                    File destFile = new File(getFullPathName(pathName, extension, fileName));
-                    downloadWithGzipSupport(new URL(url), destFile, config.getConnectTimeout(), config.getReadTimeout());
+                    meteredDownload(url, extension,
+                            (u, ext) -> downloadWithGzipSupport(u, pathName, ext, useUrlAsFileName, DownloadPolicy.unrestricted()));
                 } catch (IOException e) {
                     log.error("Failed to save {}: {}", url, e.getMessage(), e);
                     failedDownloads.add(url);
                 }
             }
         });
-        log.debug(Thread.currentThread() + ": " + (System.currentTimeMillis() - start) + " ms");
-        
         if (!failedDownloads.isEmpty()) {
             log.warn("Failed to download {} files: {}", failedDownloads.size(), failedDownloads);
         }
@@ -90,20 +125,312 @@ public class Saver {
     }
 
     /**
-     * Скачивает файл с поддержкой автоматической распаковки gzip-ответов
+     * Downloads the file and records its duration, size and outcome
+     */
+    private FileOutcome meteredDownload(String url, String extension, FileDownload download) throws IOException {
+        long start = System.nanoTime();
+        try {
+            FileOutcome outcome = download.download(url, extension);
+            SavedFileDto savedFile = outcome.savedFile();
+            DownloadOutcome metered = outcome.notMedia() ? DownloadOutcome.NOT_MEDIA
+                    : outcome.tooSmall() ? DownloadOutcome.TOO_SMALL
+                    : savedFile == null ? DownloadOutcome.NOT_MODIFIED
+                    : savedFile.getDuplicateOf() != null ? DownloadOutcome.DUPLICATE
+                    : DownloadOutcome.SAVED;
+            metrics.recordDownload(url, metered, savedFile != null ? savedFile.getSizeBytes() : 0, System.nanoTime() - start);
+            return outcome;
+        } catch (IOException e) {
+            metrics.recordDownload(url, DownloadOutcome.FAILED, 0, System.nanoTime() - start);
+            throw e;
+        }
+    }
+
+    /**
+     * Скачивает файл с поддержкой автоматической распаковки gzip-ответов.
+     * If the URL was downloaded before, the request is conditional and nothing is written when the server answers 304.
+     * Every other decision is taken before the file is committed to the destination:
+     * <ul>
+     *     <li>a URL without media extension is saved only if the Content-Type, or for a generic one the first bytes,
+     *     belong to a {@link MediaTypeRegistry media type}, which also gives the file its extension;</li>
+     *     <li>a Content-Length below the minimum size, from a HEAD probe if enabled or from the response itself,
+     *     rejects the file before its body is read;</li>
+     *     <li>without a usable Content-Length the first bytes are buffered in memory and nothing is written
+     *     unless the body reaches the minimum size;</li>
+     *     <li>the content digest is computed from the bytes as they are written, except for large files
+     *     fetched in parallel segments by {@link SegmentedDownloader};</li>
+     *     <li>content already committed by the same crawl or known to the content index is not committed again.</li>
+     * </ul>
+     * @param extension Media extension of the URL, "" to find the type from the response
+     * @param policy Rules of the current crawl
+     * @return Outcome with the saved or deduplicated file
+     */
+    private FileOutcome downloadWithGzipSupport(String url, String pathName, String extension, boolean useUrlAsFileName,
+                                                DownloadPolicy policy) throws IOException {
+        HttpRequest.Builder request = httpTransport.newRequest(url);
+        Optional<UrlCacheEntity> cached = config.isConditionalDownloadsEnabled() ? urlCacheService.find(url) : Optional.empty();
+        cached.ifPresent(c -> {
+            if (c.getEtag() != null) {
+                request.header("If-None-Match", c.getEtag());
+            }
+            if (c.getLastModified() != null) {
+                request.header("If-Modified-Since", c.getLastModified());
+            }
+        });
+        long minSize = policy.getMinSizeBytes();
+        // A revalidation of a known URL is as cheap as the probe, only new URLs are probed
+        if (minSize > 0 && cached.isEmpty() && config.isHeadSizeProbeEnabled()) {
+            OptionalLong probedLength = probeLength(url);
+            if (probedLength.isPresent() && probedLength.getAsLong() < minSize) {
+                log.debug("File {} too small by HEAD: {} bytes", url, probedLength.getAsLong());
+                return FileOutcome.TOO_SMALL;
+            }
+        }
+        HttpResponse<InputStream> response = httpTransport.send(request.build());
+        if (response.statusCode() == HTTP_NOT_MODIFIED && cached.isPresent()) {
+            response.body().close();
+            log.debug("Not modified: {}, cached as {}", url, cached.get().getPath());
+            return FileOutcome.NOT_MODIFIED;
+        }
+        return save(url, response, pathName, extension, useUrlAsFileName, policy);
+    }
+
+    /**
+     * Writes the body of a successful response to its file, see {@link #downloadWithGzipSupport}
+     */
+    private FileOutcome save(String url, HttpResponse<InputStream> response, String pathName, String extension,
+                             boolean useUrlAsFileName, DownloadPolicy policy) throws IOException {
+        HttpTransport.ensureSuccess(response);
+        OptionalLong declaredLength = HttpTransport.declaredLength(response);
+        // Body with the sniffed bytes put back, null while the body is untouched
+        InputStream sniffedBody = null;
+        if (extension.isEmpty()) {
+            String contentType = response.headers().firstValue("Content-Type").orElse(null);
+            Optional<MediaTypeRegistry.MediaType> type = mediaTypeRegistry.byContentType(contentType);
+            if (type.isEmpty() && mediaTypeRegistry.isGeneric(contentType)) {
+                InputStream body = httpTransport.bodyOf(response);
+                byte[] head;
+                try {
+                    head = body.readNBytes(mediaTypeRegistry.sniffLength());
+                } catch (IOException e) {
+                    body.close();
+                    throw e;
+                }
+                type = mediaTypeRegistry.byContent(head, head.length);
+                if (type.isPresent()) {
+                    sniffedBody = new SequenceInputStream(new ByteArrayInputStream(head), body);
+                } else {
+                    body.close();
+                }
+            } else if (type.isEmpty()) {
+                discard(httpTransport.encodedBodyOf(response), declaredLength.orElse(Long.MAX_VALUE));
+            }
+            if (type.isEmpty()) {
+                log.debug("Not a media file: {} ({})", url, contentType);
+                return FileOutcome.NOT_MEDIA;
+            }
+            extension = type.get().extension();
+        }
+        String fileName = useUrlAsFileName ? extractFileNameFromUrl(url, extension) : null;
+        File destFile = new File(getFullPathName(pathName, extension, fileName));
+
+        long minSize = policy.getMinSizeBytes();
+        if (declaredLength.isPresent() && declaredLength.getAsLong() < minSize) {
+            discard(sniffedBody != null ? sniffedBody : httpTransport.encodedBodyOf(response), declaredLength.getAsLong());
+            log.debug("File {} too small: {} bytes", url, declaredLength.getAsLong());
+            return FileOutcome.TOO_SMALL;
+        }
+
+        Path partFile = Path.of(destFile.getPath() + PART_SUFFIX);
+        SavedFileDto savedFile;
+        try {
+            String digest;
+            if (sniffedBody == null && segmentedDownloader.supports(response)) {
+                try {
+                    digest = segmentedDownloader.download(url, response, partFile);
+                } catch (RangeNotHonouredException e) {
+                    log.debug("{}, downloading {} as a single stream", e.getMessage(), url);
+                    HttpResponse<InputStream> full = httpTransport.get(url);
+                    digest = transferWithResume(url, full, httpTransport.bodyOf(full), partFile);
+                }
+            } else {
+                InputStream body = sniffedBody != null ? sniffedBody : httpTransport.bodyOf(response);
+                if (declaredLength.isEmpty() && minSize > 0) {
+                    byte[] head;
+                    try {
+                        head = body.readNBytes((int) Math.min(minSize, Integer.MAX_VALUE));
+                    } catch (IOException e) {
+                        body.close();
+                        throw e;
+                    }
+                    if (head.length < minSize) {
+                        body.close();
+                        log.debug("File {} too small: {} bytes", url, head.length);
+                        return FileOutcome.TOO_SMALL;
+                    }
+                    body = new SequenceInputStream(new ByteArrayInputStream(head), body);
+                }
+                digest = transferWithResume(url, response, body, partFile);
+            }
+            savedFile = SavedFileDto.builder()
+                    .url(url)
+                    .path(destFile.getPath())
+                    .sizeBytes(Files.size(partFile))
+                    .digest(digest)
+                    .build();
+            commit(savedFile, partFile, destFile.toPath(), policy);
+        } finally {
+            Files.deleteIfExists(partFile);
+        }
+        if (config.isConditionalDownloadsEnabled()) {
+            HttpHeaders headers = response.headers();
+            urlCacheService.save(url,
+                    headers.firstValue("ETag").orElse(null),
+                    headers.firstValue("Last-Modified").orElse(null),
+                    headers.firstValue("Content-Length").map(Long::valueOf).orElse(null),
+                    savedFile.getDuplicateOf() != null ? savedFile.getDuplicateOf() : destFile.getAbsolutePath());
+        }
+        return new FileOutcome(savedFile, false, false);
+    }
+
+    /**
+     * Asks for the size of the resource with a HEAD request
+     * @return Declared size, empty if the server does not tell it or does not support HEAD
+     */
+    private OptionalLong probeLength(String url) throws InterruptedIOException {
+        try {
+            HttpResponse<Void> head = httpTransport.head(url);
+            return head.statusCode() / 100 == 2 ? HttpTransport.declaredLength(head) : OptionalLong.empty();
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            log.debug("HEAD {} failed, falling back to GET: {}", url, e.getMessage());
+            return OptionalLong.empty();
+        }
+    }
+
+    /**
+     * Gets rid of the body of a rejected response.
+     * Short bodies are read to the end, which is cheaper than closing an HTTP/1.1 connection
+     * that could be reused for the next file, longer ones are aborted.
+     */
+    private static void discard(InputStream stream, long length) throws IOException {
+        try (InputStream body = stream) {
+            if (length <= DISCARD_LIMIT) {
+                body.transferTo(OutputStream.nullOutputStream());
+            }
+        }
+    }
+
+    /**
+     * Moves the complete part file to its destination, unless the same content was already committed
+     * by this crawl or is known to the content index. In that case {@link SavedFileDto#getDuplicateOf()} is set
+     * and the part file is left for the caller to delete.
+     */
+    private void commit(SavedFileDto savedFile, Path partFile, Path destFile, DownloadPolicy policy) throws IOException {
+        String digest = savedFile.getDigest();
+        Optional<String> crawlCopy = policy.claimDigest(digest);
+        if (crawlCopy.isPresent()) {
+            if (!commitDuplicate(savedFile, destFile, crawlCopy.get())) {
+                Files.move(partFile, destFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return;
+        }
+        // This download holds the claim, later files of the crawl with the same content wait until it is resolved
+        boolean resolved = false;
+        try {
+            Optional<String> storedCopy = knownContentFilter.findStoredCopy(digest, destFile, savedFile.getSizeBytes());
+            if (storedCopy.isPresent() && commitDuplicate(savedFile, destFile, storedCopy.get())) {
+                policy.resolveDigest(digest, storedCopy.get());
+            } else {
+                Files.move(partFile, destFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                knownContentFilter.registerStoredCopy(digest, destFile, savedFile.getSizeBytes());
+                policy.resolveDigest(digest, destFile.toAbsolutePath().toString());
+            }
+            resolved = true;
+        } finally {
+            if (!resolved) {
+                policy.releaseDigest(digest);
+            }
+        }
+    }
+
+    /**
+     * @return false if the download has to be committed as a regular file after all
+     */
+    private boolean commitDuplicate(SavedFileDto savedFile, Path destFile, String storedCopy) {
+        if (!knownContentFilter.commitStoredCopy(destFile, storedCopy)) {
+            return false;
+        }
+        log.debug("Content of {} is already stored as {}", savedFile.getUrl(), storedCopy);
+        savedFile.setDuplicateOf(storedCopy);
+        return true;
+    }
+
+    /**
+     * Writes the response body to the part file.
+     * A transfer that breaks off is continued with a Range request from the last received byte,
+     * up to {@link MediaSaverConfig#getDownloadAttempts()} attempts in total.
+     * @param body Decoded body of the response, possibly preceded by bytes already read from it
+     * @return Hex digest of the complete content
      */
-    private void downloadWithGzipSupport(URL url, File destFile, int connectTimeout, int readTimeout) throws IOException {
-        URLConnection urlConnection = getUrlConnection(url, connectTimeout, readTimeout);
-        // urlConnection.addRequestProperty("Referer", "https://example.com/"); // если нужно
-        try (InputStream is = urlConnection.getInputStream();
-             OutputStream os = Files.newOutputStream(destFile.toPath())) {
-            String encoding = urlConnection.getHeaderField("Content-Encoding");
-            InputStream actualIs = is;
-            if (encoding != null && encoding.toLowerCase().contains("gzip")) {
-                actualIs = new GZIPInputStream(is);
+    private String transferWithResume(String url, HttpResponse<InputStream> response, InputStream body, Path partFile) throws IOException {
+        String validator = HttpTransport.rangeValidator(response);
+        MessageDigest digest = ContentDigest.newDigest();
+        long[] received = new long[1];
+        try (RandomAccessFile file = new RandomAccessFile(partFile.toFile(), "rw")) {
+            file.setLength(0);
+            OptionalLong declaredLength = HttpTransport.declaredLength(response);
+            if (config.isPreallocateFiles() && declaredLength.isPresent()) {
+                // Reserves the space up front, so the file system can lay out a large file in one piece
+                file.setLength(declaredLength.getAsLong());
+            }
+            FileChannel channel = file.getChannel();
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    if (attempt > 1) {
+                        response = resume(url, validator, received[0]);
+                        body = httpTransport.bodyOf(response);
+                        if (received[0] > 0 && !HttpTransport.isRangeStartingAt(response, received[0])) {
+                            log.debug("Server did not resume {}, starting over", url);
+                            received[0] = 0;
+                        }
+                        if (received[0] == 0) {
+                            digest.reset();
+                        }
+                    }
+                    try (InputStream is = body) {
+                        transferBufferPool.transfer(is, channel, received[0], -1, digest, received);
+                    }
+                    break;
+                } catch (HttpStatusException e) {
+                    throw e;
+                } catch (IOException e) {
+                    if (attempt >= config.getDownloadAttempts()) {
+                        throw e;
+                    }
+                    log.warn("Download of {} broke off after {} bytes, resuming (attempt {}): {}",
+                            url, received[0], attempt + 1, e.getMessage());
+                }
             }
-            actualIs.transferTo(os);
+            // Cuts off preallocated space the content did not fill, or the tail of a longer earlier attempt
+            file.setLength(received[0]);
+        }
+        return ContentDigest.toHex(digest.digest());
+    }
+
+    /**
+     * Requests the rest of the resource, or all of it if the transfer cannot be resumed safely
+     */
+    private HttpResponse<InputStream> resume(String url, String validator, long from) throws IOException {
+        if (validator == null || from == 0) {
+            return httpTransport.get(url);
         }
+        HttpResponse<InputStream> response = httpTransport.send(httpTransport.rangeRequest(url, validator, from, -1));
+        if (response.statusCode() == HTTP_RANGE_NOT_SATISFIABLE) {
+            response.body().close();
+            return httpTransport.get(url);
+        }
+        return HttpTransport.ensureSuccess(response);
     }
 
     /**
@@ -114,11 +441,48 @@ public class Saver {
      * @return DownloadResultDto with detailed download statistics
      */
     public DownloadResultDto downloadUrlToFileWithDetails(Map<String, String> urlToExtensionMap, String pathName, boolean useUrlAsFileName) {
+        return downloadUrlToFileWithDetails(urlToExtensionMap, pathName, useUrlAsFileName, DownloadPolicy.unrestricted());
+    }
+
+    /**
+     * Downloads media files and returns detailed results
+     * @param urlToExtensionMap Map of URL to file extension
+     * @param pathName Directory path to save files
+     * @param useUrlAsFileName Whether to use URL filename instead of random name
+     * @param policy Size and deduplication rules of the current crawl
+     * @return DownloadResultDto with detailed download statistics
+     */
+    public DownloadResultDto downloadUrlToFileWithDetails(Map<String, String> urlToExtensionMap, String pathName,
+                                                          boolean useUrlAsFileName, DownloadPolicy policy) {
+        return collectResults(urlToExtensionMap, pathName, policy,
+                (url, extension) -> downloadWithGzipSupport(url, pathName, extension, useUrlAsFileName, policy));
+    }
+
+    /**
+     * Saves a media file from a response that was requested as a page, so the file costs no second request
+     * @param url The requested URL
+     * @param response Successful response, its body is always consumed or closed
+     * @param extension Extension of the media type the Content-Type of the response belongs to
+     * @param pathName Directory path to save files
+     * @param policy Size and deduplication rules of the current crawl
+     * @return DownloadResultDto of this single file
+     */
+    public DownloadResultDto saveResponse(String url, HttpResponse<InputStream> response, String extension,
+                                          String pathName, DownloadPolicy policy) {
+        return collectResults(Map.of(url, extension), pathName, policy,
+                (u, ext) -> save(u, response, pathName, ext, config.isUseUrlAsFilename(), policy));
+    }
+
+    private DownloadResultDto collectResults(Map<String, String> urlToExtensionMap, String pathName,
+                                             DownloadPolicy policy, FileDownload download) {
         long start = System.currentTimeMillis();
         List<String> successfulDownloads = new ArrayList<>();
         List<String> failedDownloads = new ArrayList<>();
         List<String> invalidUrls = new ArrayList<>();
         List<String> urlsWithoutExtension = new ArrayList<>();
+        List<SavedFileDto> savedFiles = new ArrayList<>();
+        List<String> notModified = new ArrayList<>();
+        List<String> tooSmall = new ArrayList<>();
         try {
             checkDirectoryExists(pathName);
         } catch (IOException e) {
@@ -128,6 +492,9 @@ public class Saver {
                     .failedDownloads(List.of())
                     .invalidUrls(List.of())
                     .urlsWithoutExtension(List.of())
+                    .savedFiles(List.of())
+                    .notModified(List.of())
+                    .tooSmall(List.of())
                     .totalProcessed(0)
                     .totalSuccessful(0)
                     .totalFailed(0)
@@ -142,31 +509,57 @@ public class Saver {
                 return;
             }
             
-            if (extension.isEmpty()) {
+            if (extension.isEmpty() && !isMediaCandidate(url)) {
                 log.debug("Bad extension: {}", url);
                 urlsWithoutExtension.add(url);
-            } else {
-                try {
-                    log.debug("try to save {}", url);
-                    String fileName = useUrlAsFileName ? extractFileNameFromUrl(url, extension) : null;
-                    File destFile = new File(getFullPathName(pathName, extension, fileName));
-                    downloadWithGzipSupport(new URL(url), destFile, config.getConnectTimeout(), config.getReadTimeout());
-                    successfulDownloads.add(url);
-                } catch (IOException e) {
+                return;
+            }
+            try {
+                log.debug("try to save {}", url);
+                FileOutcome outcome = meteredDownload(url, extension, download);
+                if (outcome.notMedia()) {
+                    urlsWithoutExtension.add(url);
+                    return;
+                }
+                // An earlier failure of the URL is settled, whichever crawl queued it
+                failedDownloadService.recordSuccess(url, pathName);
+                if (outcome.tooSmall()) {
+                    tooSmall.add(url);
+                    return;
+                }
+                if (outcome.savedFile() != null) {
+                    savedFiles.add(outcome.savedFile());
+                } else {
+                    notModified.add(url);
+                }
+                successfulDownloads.add(url);
+            } catch (IOException e) {
+                if (extension.isEmpty()) {
+                    // Without an extension the link was only a guess, its failure is not a download to retry
+                    log.debug("Could not check {}: {}", url, e.getMessage());
+                    urlsWithoutExtension.add(url);
+                    return;
+                }
+                if (e instanceof HostUnavailableException) {
+                    log.warn("Skipped {}: {}", url, e.getMessage());
+                } else {
                     log.error("Failed to save {}: {}", url, e.getMessage(), e);
-                    failedDownloads.add(url);
                 }
+                failedDownloads.add(url);
+                failedDownloadService.recordFailure(url, pathName, policy.getMinSizeBytes(), e);
             }
         });
         
         long processingTime = System.currentTimeMillis() - start;
-        log.debug(Thread.currentThread() + ": " + processingTime + " ms");
-        
+
         return DownloadResultDto.builder()
                 .successfulDownloads(successfulDownloads)
                 .failedDownloads(failedDownloads)
                 .invalidUrls(invalidUrls)
                 .urlsWithoutExtension(urlsWithoutExtension)
+                .savedFiles(savedFiles)
+                .notModified(notModified)
+                .tooSmall(tooSmall)
                 .totalProcessed(urlToExtensionMap.size())
                 .totalSuccessful(successfulDownloads.size())
                 .totalFailed(failedDownloads.size() + invalidUrls.size() + urlsWithoutExtension.size())
@@ -261,17 +654,23 @@ public class Saver {
     /**
      * Extracts file extension from URL
      * @param url The URL to extract extension from
-     * @return File extension in lowercase or empty string if not found
+     * @return Media extension in lowercase or empty string if the URL has none
      */
     public String getFileExtension(String url) {
-        int lastDot = url.lastIndexOf(".");
-        if (lastDot != -1 && lastDot != 0) {
-            String extension = url.substring(lastDot).split("[?&#]", 2)[0].toLowerCase();
-            if (validExtension.contains(extension)) {
-                return extension;
-            }
-        }
-        return "";
+        String extension = MediaTypeRegistry.urlExtension(url);
+        return mediaTypeRegistry.byExtension(extension).isPresent() ? extension : "";
+    }
+
+    /**
+     * Checks whether a URL without media extension is still downloaded to find its type from the response.
+     * Only URLs without any extension are, a page or script extension says enough.
+     * @param url The URL to check
+     * @return true if the URL has a media extension or may serve media under a URL without extension
+     */
+    public boolean isMediaCandidate(String url) {
+        String extension = MediaTypeRegistry.urlExtension(url);
+        return mediaTypeRegistry.byExtension(extension).isPresent()
+                || (extension.isEmpty() && config.isSniffExtensionlessLinks());
     }
 
     private void checkDirectoryExists(String pathName) throws IOException {
@@ -282,16 +681,23 @@ public class Saver {
         }
     }
 
-    private static URLConnection getUrlConnection(URL url, int connectTimeout, int readTimeout) throws IOException {
-        URLConnection urlConnection = url.openConnection();
-        urlConnection.setConnectTimeout(connectTimeout);
-        urlConnection.setReadTimeout(readTimeout);
-        urlConnection.addRequestProperty("User-Agent",
-                "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0.0.0 Safari/537.36");
-        urlConnection.addRequestProperty("Accept",
-                "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8");
-        urlConnection.addRequestProperty("Accept-Language", "ru-RU,ru;q=0.9,en-US;q=0.8,en;q=0.7");
-        urlConnection.addRequestProperty("Accept-Encoding", "gzip, deflate");
-        return urlConnection;
+    /**
+     * Result of a single file download
+     * @param savedFile Saved or deduplicated file, null if nothing was saved
+     * @param tooSmall Whether the file was rejected for being below the minimum size
+     * @param notMedia Whether the response of a URL without extension turned out not to be a media file
+     */
+    private record FileOutcome(SavedFileDto savedFile, boolean tooSmall, boolean notMedia) {
+        static final FileOutcome NOT_MODIFIED = new FileOutcome(null, false, false);
+        static final FileOutcome TOO_SMALL = new FileOutcome(null, true, false);
+        static final FileOutcome NOT_MEDIA = new FileOutcome(null, false, true);
+    }
+
+    /**
+     * A single download, given the URL and its media extension
+     */
+    @FunctionalInterface
+    private interface FileDownload {
+        FileOutcome download(String url, String extension) throws IOException;
     }
 }
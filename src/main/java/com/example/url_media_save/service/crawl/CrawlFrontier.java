@@ -0,0 +1,106 @@
+package com.example.url_media_save.service.crawl;
+
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Breadth-first queue of pages of a single crawl.
+ * Every page is accepted at most once (by normalized URL), no deeper than {@code maxDepth}
+ * and no more than {@code maxPages} pages in total, so a crawl of a site with cyclic links always terminates.
+ * The frontier also remembers which links were dispatched for download, so a file linked several times
+ * or under several spellings is fetched once per crawl.
+ * Safe to use from many worker threads.
+ */
+public class CrawlFrontier {
+    private static final long POLL_INTERVAL_MS = 50;
+
+    private final UrlNormalizer urlNormalizer;
+    private final int maxDepth;
+    private final int maxPages;
+    private final BlockingQueue<CrawlPage> queue = new LinkedBlockingQueue<>();
+    private final Set<String> visited = ConcurrentHashMap.newKeySet();
+    private final Set<String> dispatched = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger acceptedPages = new AtomicInteger();
+    /**
+     * Pages queued or being processed. Incremented before a page is queued and decremented only after
+     * the page that found it is done, so it reaches zero only when the crawl is really over.
+     */
+    private final AtomicInteger pendingPages = new AtomicInteger();
+
+    public CrawlFrontier(UrlNormalizer urlNormalizer, int maxDepth, int maxPages) {
+        this.urlNormalizer = urlNormalizer;
+        this.maxDepth = maxDepth;
+        this.maxPages = maxPages;
+    }
+
+    /**
+     * Queues a page unless it was already seen or is out of the crawl limits
+     * @param url Page URL
+     * @param depth Depth of the page
+     * @return true if the page was queued
+     */
+    public boolean offer(String url, int depth) {
+        if (depth > maxDepth || acceptedPages.get() >= maxPages) {
+            return false;
+        }
+        if (!visited.add(urlNormalizer.normalize(url))) {
+            return false;
+        }
+        if (acceptedPages.incrementAndGet() > maxPages) {
+            return false;
+        }
+        pendingPages.incrementAndGet();
+        queue.add(new CrawlPage(url, depth));
+        return true;
+    }
+
+    /**
+     * Claims a link for download
+     * @param url Link found on a page
+     * @return Normalized link to download, or null if the same link was already claimed in this crawl
+     */
+    public String claimDownload(String url) {
+        String normalized = urlNormalizer.normalize(url);
+        return dispatched.add(normalized) ? normalized : null;
+    }
+
+    /**
+     * Waits for the next page to process
+     * @return Next page, or null when the queue is empty and no page is being processed anymore
+     * @throws InterruptedException if the worker is interrupted while waiting
+     */
+    public CrawlPage take() throws InterruptedException {
+        while (pendingPages.get() > 0) {
+            CrawlPage page = queue.poll(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            if (page != null) {
+                return page;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Marks a page taken with {@link #take()} as processed. Must be called after the links found on it were offered.
+     */
+    public void done(CrawlPage page) {
+        pendingPages.decrementAndGet();
+    }
+
+    /**
+     * @return true if pages linked from the start page are crawled at all
+     */
+    public boolean followsLinks() {
+        return maxDepth > 0;
+    }
+
+    /**
+     * @return Number of pages accepted into the crawl
+     */
+    public int getAcceptedPages() {
+        return Math.min(acceptedPages.get(), maxPages);
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.url_media_save.service.crawl;
+
+import com.example.url_media_save.dto.DownloadResultDto;
+
+/**
+ * Receives progress of a crawl while it runs.
+ * Methods are called from the crawl worker and download threads, implementations must be thread-safe.
+ */
+public interface CrawlListener {
+    /**
+     * Listener for callers that only need the final result
+     */
+    CrawlListener NONE = new CrawlListener() {
+    };
+
+    /**
+     * Called after a page was read to the end
+     * @param url Page URL
+     * @param linksFound Number of links found on the page
+     */
+    default void pageProcessed(String url, int linksFound) {
+    }
+
+    /**
+     * Called as soon as the download of a single link is finished
+     * @param result Result of the download
+     */
+    default void downloadCompleted(DownloadResultDto result) {
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.url_media_save.service.crawl;
+
+import lombok.Value;
+
+/**
+ * Page waiting in the crawl frontier
+ */
+@Value
+public class CrawlPage {
+    String url;
+    /**
+     * Number of links followed from the start page, the start page itself has depth 0
+     */
+    int depth;
+}
@@ -0,0 +1,133 @@
+package com.example.url_media_save.service.crawl;
+
+import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.dto.InfoResponseDto;
+import com.example.url_media_save.dto.SavedFileDto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Download statistics of a single crawl.
+ * Download threads record their results concurrently without locking: counters are {@link LongAdder}s
+ * and URL lists are capped at {@code maxUrlsPerCategory} entries, so the memory of a crawl does not grow
+ * with the number of failed or skipped links. The response is built from the counters in one pass.
+ */
+public class CrawlStats {
+    private final LongAdder searchFiles = new LongAdder();
+    private final LongAdder totalProcessed = new LongAdder();
+    private final LongAdder totalSuccessful = new LongAdder();
+    private final LongAdder totalFailed = new LongAdder();
+    private final LongAdder notModified = new LongAdder();
+    private final LongAdder tooSmall = new LongAdder();
+    /**
+     * Downloads that were not committed because their content was already stored
+     */
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder duplicateBytes = new LongAdder();
+    /**
+     * Links dropped before download because the crawl had already dispatched them
+     */
+    private final LongAdder repeatedLinks = new LongAdder();
+    private final UrlCollector failedDownloads;
+    private final UrlCollector invalidUrls;
+    private final UrlCollector urlsWithoutExtension;
+
+    public CrawlStats(int maxUrlsPerCategory) {
+        this.failedDownloads = new UrlCollector(maxUrlsPerCategory);
+        this.invalidUrls = new UrlCollector(maxUrlsPerCategory);
+        this.urlsWithoutExtension = new UrlCollector(maxUrlsPerCategory);
+    }
+
+    /**
+     * @param links Number of links found on a page
+     */
+    public void recordLinks(int links) {
+        searchFiles.add(links);
+    }
+
+    /**
+     * Counts a link that was not downloaded again
+     */
+    public void recordRepeatedLink() {
+        repeatedLinks.increment();
+    }
+
+    /**
+     * Adds the result of a single download
+     * @param result Download result
+     */
+    public void record(DownloadResultDto result) {
+        totalProcessed.add(result.getTotalProcessed());
+        totalSuccessful.add(result.getTotalSuccessful());
+        totalFailed.add(result.getTotalFailed());
+        notModified.add(result.getNotModified().size());
+        tooSmall.add(result.getTooSmall().size());
+        result.getFailedDownloads().forEach(failedDownloads::add);
+        result.getInvalidUrls().forEach(invalidUrls::add);
+        result.getUrlsWithoutExtension().forEach(urlsWithoutExtension::add);
+        for (SavedFileDto savedFile : result.getSavedFiles()) {
+            if (savedFile.getDuplicateOf() != null) {
+                duplicates.increment();
+                duplicateBytes.add(savedFile.getSizeBytes());
+            }
+        }
+    }
+
+    /**
+     * Builds the response, call it only after all downloads are recorded
+     * @return Response builder with the download statistics filled in
+     */
+    public InfoResponseDto.InfoResponseDtoBuilder toResponse() {
+        int successful = totalSuccessful.intValue();
+        return InfoResponseDto.builder()
+                .searchFiles(searchFiles.intValue())
+                .repeatedLinks(repeatedLinks.intValue())
+                .downloadFiles(successful)
+                .deleteDuplicates(duplicates.intValue())
+                .bytesReclaimed(duplicateBytes.sum())
+                .totalProcessed(totalProcessed.intValue())
+                .totalSuccessful(successful)
+                .totalFailed(totalFailed.intValue())
+                .invalidUrls(invalidUrls.count())
+                .urlsWithoutExtension(urlsWithoutExtension.count())
+                .notModified(notModified.intValue())
+                .tooSmall(tooSmall.intValue())
+                .failedDownloadUrls(failedDownloads.urls())
+                .invalidUrlList(invalidUrls.urls())
+                .urlsWithoutExtensionList(urlsWithoutExtension.urls());
+    }
+
+    /**
+     * Counts every URL but keeps only the first {@code limit} of them
+     */
+    private static final class UrlCollector {
+        private final int limit;
+        private final LongAdder count = new LongAdder();
+        private final Queue<String> urls = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger kept = new AtomicInteger();
+
+        private UrlCollector(int limit) {
+            this.limit = limit;
+        }
+
+        private void add(String url) {
+            count.increment();
+            if (kept.get() < limit && kept.getAndIncrement() < limit) {
+                urls.add(url);
+            }
+        }
+
+        private int count() {
+            return count.intValue();
+        }
+
+        private List<String> urls() {
+            return new ArrayList<>(urls);
+        }
+    }
+}
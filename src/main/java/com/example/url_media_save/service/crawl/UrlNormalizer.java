@@ -0,0 +1,108 @@
+package com.example.url_media_save.service.crawl;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Brings URLs that point to the same resource to the same string
+ */
+@Component
+public class UrlNormalizer {
+    /**
+     * Query parameters dropped by name, lowercased
+     */
+    private final Set<String> ignoredParams = new HashSet<>();
+    /**
+     * Query parameters dropped by name prefix, from entries ending with "*"
+     */
+    private final List<String> ignoredParamPrefixes = new ArrayList<>();
+
+    public UrlNormalizer(MediaSaverConfig config) {
+        for (String param : config.getIgnoredQueryParams()) {
+            String name = param.trim().toLowerCase(Locale.ROOT);
+            if (name.endsWith("*")) {
+                ignoredParamPrefixes.add(name.substring(0, name.length() - 1));
+            } else if (!name.isEmpty()) {
+                ignoredParams.add(name);
+            }
+        }
+    }
+
+    /**
+     * Lowercases scheme and host, drops the default port, the fragment and the ignored query parameters
+     * and replaces an empty path with "/"
+     * @param url The URL to normalize
+     * @return Normalized URL, or the URL unchanged if it cannot be parsed
+     */
+    public String normalize(String url) {
+        try {
+            URI uri = new URI(url.trim());
+            if (uri.getScheme() == null || uri.getRawAuthority() == null) {
+                return url;
+            }
+            String scheme = uri.getScheme().toLowerCase(Locale.ROOT);
+            StringBuilder normalized = new StringBuilder(url.length())
+                    .append(scheme)
+                    .append("://");
+            if (uri.getRawUserInfo() != null) {
+                normalized.append(uri.getRawUserInfo()).append('@');
+            }
+            normalized.append(uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : uri.getRawAuthority());
+            if (uri.getPort() != -1 && uri.getPort() != defaultPort(scheme)) {
+                normalized.append(':').append(uri.getPort());
+            }
+            String path = uri.getRawPath();
+            normalized.append(path == null || path.isEmpty() ? "/" : path);
+            if (uri.getRawQuery() != null) {
+                appendQuery(normalized, uri.getRawQuery());
+            }
+            return normalized.toString();
+        } catch (URISyntaxException e) {
+            return url;
+        }
+    }
+
+    /**
+     * Appends the query without empty and ignored parameters, the others keep their order
+     */
+    private void appendQuery(StringBuilder normalized, String rawQuery) {
+        char separator = '?';
+        for (String param : rawQuery.split("&")) {
+            if (param.isEmpty() || isIgnored(param)) {
+                continue;
+            }
+            normalized.append(separator).append(param);
+            separator = '&';
+        }
+    }
+
+    private boolean isIgnored(String param) {
+        int nameEnd = param.indexOf('=');
+        String name = (nameEnd == -1 ? param : param.substring(0, nameEnd)).toLowerCase(Locale.ROOT);
+        if (ignoredParams.contains(name)) {
+            return true;
+        }
+        for (String prefix : ignoredParamPrefixes) {
+            if (name.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int defaultPort(String scheme) {
+        return switch (scheme) {
+            case "http" -> 80;
+            case "https" -> 443;
+            default -> -1;
+        };
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.url_media_save.service.download;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.service.Saver;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs media downloads on virtual threads.
+ * Every download waits for its {@link DownloadPermits}, so the number of open sockets
+ * is bounded by {@link MediaSaverConfig#getMaxConcurrentDownloads()} and no single host gets more than
+ * {@link MediaSaverConfig#getMaxConcurrentDownloadsPerHost()} of them.
+ */
+@Slf4j
+@Component
+public class DownloadEngine {
+    private final Saver saver;
+    private final MediaSaverConfig config;
+    private final DownloadPermits permits;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public DownloadEngine(Saver saver, MediaSaverConfig config, DownloadPermits permits) {
+        this.saver = saver;
+        this.config = config;
+        this.permits = permits;
+    }
+
+    /**
+     * Schedules a single URL for download.
+     * URLs that are invalid or cannot be media files by their extension need no I/O and are resolved immediately
+     * on the calling thread, without taking any permits.
+     * @param url The URL to download
+     * @param pathName Directory path to save files
+     * @param policy Size and deduplication rules of the current crawl
+     * @return Future completed with the download result of this URL
+     */
+    public CompletableFuture<DownloadResultDto> submit(String url, String pathName, DownloadPolicy policy) {
+        String extension = saver.getFileExtension(url);
+        if (!saver.isValidUrl(url) || (extension.isEmpty() && !saver.isMediaCandidate(url))) {
+            return CompletableFuture.completedFuture(saver.downloadUrlToFileWithDetails(Map.of(url, extension), pathName));
+        }
+        return CompletableFuture.supplyAsync(() -> download(url, extension, pathName, policy), executor);
+    }
+
+    /**
+     * Reports a link without media extension that is not requested, e.g. a page of the crawled site the crawl
+     * does not follow
+     * @param url The URL that is skipped
+     * @return Completed future with the URL listed as without extension
+     */
+    public CompletableFuture<DownloadResultDto> skip(String url) {
+        return CompletableFuture.completedFuture(unprocessed(url, List.of(), List.of(url)));
+    }
+
+    /**
+     * Downloads all URLs concurrently and waits for every one of them to finish
+     * @param urls URLs to download
+     * @param pathName Directory path to save files
+     * @return Download results in the order of the given URLs
+     */
+    public List<DownloadResultDto> downloadAll(Collection<String> urls, String pathName) {
+        List<CompletableFuture<DownloadResultDto>> futures = urls.stream()
+                .map(url -> submit(url, pathName, DownloadPolicy.unrestricted()))
+                .toList();
+        return futures.stream()
+                .map(CompletableFuture::join)
+                .toList();
+    }
+
+    private DownloadResultDto download(String url, String extension, String pathName, DownloadPolicy policy) {
+        try {
+            permits.acquire(url);
+            try {
+                return saver.downloadUrlToFileWithDetails(Map.of(url, extension), pathName, config.isUseUrlAsFilename(), policy);
+            } finally {
+                permits.release(url);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.warn("Download of {} interrupted", url);
+            return unprocessed(url, List.of(url), List.of());
+        } catch (RuntimeException e) {
+            // E.g. a URI the HTTP client rejects, it must fail this file and not the page that waits for it
+            log.error("Download of {} failed unexpectedly: {}", url, e.getMessage(), e);
+            return unprocessed(url, List.of(url), List.of());
+        }
+    }
+
+    /**
+     * Result of a URL that was not saved, listed either as failed or as without extension
+     */
+    private static DownloadResultDto unprocessed(String url, List<String> failed, List<String> withoutExtension) {
+        return DownloadResultDto.builder()
+                .successfulDownloads(List.of())
+                .failedDownloads(failed)
+                .invalidUrls(List.of())
+                .urlsWithoutExtension(withoutExtension)
+                .savedFiles(List.of())
+                .notModified(List.of())
+                .tooSmall(List.of())
+                .totalProcessed(1)
+                .totalSuccessful(0)
+                .totalFailed(1)
+                .processingTimeMs(0)
+                .build();
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.url_media_save.service.download;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.service.metrics.MediaMetrics;
+import org.springframework.stereotype.Component;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Connection budget of media downloads.
+ * Every open download connection holds one global permit and one permit of its host, so the number of open sockets
+ * is bounded by {@link MediaSaverConfig#getMaxConcurrentDownloads()} and no single host gets more than
+ * {@link MediaSaverConfig#getMaxConcurrentDownloadsPerHost()} of them. Downloads wait for their first permits,
+ * extra connections of a segmented download are only taken while they are free.
+ */
+@Component
+public class DownloadPermits {
+    private final MediaSaverConfig config;
+    private final Semaphore globalPermits;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    public DownloadPermits(MediaSaverConfig config, MediaMetrics metrics) {
+        this.config = config;
+        this.globalPermits = new Semaphore(config.getMaxConcurrentDownloads(), true);
+        metrics.registerPool("downloads", config.getMaxConcurrentDownloads(),
+                () -> config.getMaxConcurrentDownloads() - globalPermits.availablePermits(),
+                globalPermits::getQueueLength);
+    }
+
+    /**
+     * Waits for a permit of the host of the URL and a global one
+     * @throws InterruptedException if the thread is interrupted while waiting, no permit is held then
+     */
+    public void acquire(String url) throws InterruptedException {
+        Semaphore hostLimit = hostLimitOf(url);
+        // Wait for the host first so a busy host does not hold global permits other hosts could use
+        hostLimit.acquire();
+        try {
+            globalPermits.acquire();
+        } catch (InterruptedException e) {
+            hostLimit.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Releases the permits taken by {@link #acquire(String)}
+     */
+    public void release(String url) {
+        release(url, 1);
+    }
+
+    /**
+     * Takes up to {@code max} more connections to the host of the URL without waiting.
+     * A download that already holds permits must never wait for more, downloads waiting for each other
+     * would never finish.
+     * @return Number of connections taken, release them with {@link #release(String, int)}
+     */
+    public int tryAcquire(String url, int max) {
+        Semaphore hostLimit = hostLimitOf(url);
+        int acquired = 0;
+        while (acquired < max && hostLimit.tryAcquire()) {
+            if (!globalPermits.tryAcquire()) {
+                hostLimit.release();
+                break;
+            }
+            acquired++;
+        }
+        return acquired;
+    }
+
+    /**
+     * Releases {@code count} connections to the host of the URL
+     */
+    public void release(String url, int count) {
+        if (count > 0) {
+            globalPermits.release(count);
+            hostLimitOf(url).release(count);
+        }
+    }
+
+    private Semaphore hostLimitOf(String url) {
+        return hostPermits.computeIfAbsent(hostOf(url), host -> new Semaphore(config.getMaxConcurrentDownloadsPerHost(), true));
+    }
+
+    private static String hostOf(String url) {
+        try {
+            return new URL(url).getHost().toLowerCase(Locale.ROOT);
+        } catch (MalformedURLException e) {
+            return "";
+        }
+    }
+}
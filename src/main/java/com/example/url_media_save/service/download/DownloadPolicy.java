@@ -0,0 +1,75 @@
+package com.example.url_media_save.service.download;
+
+import lombok.Getter;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Rules a crawl applies to every file before it is committed to the save folder:
+ * files below the minimum size are rejected and content already committed by the same crawl is not committed twice.
+ * One instance is shared by all downloads of a crawl.
+ */
+public class DownloadPolicy {
+    @Getter
+    private final long minSizeBytes;
+    private final Map<String, CompletableFuture<String>> committedDigests = new ConcurrentHashMap<>();
+
+    /**
+     * @param minSizeBytes Smallest file to keep, 0 to keep all files
+     */
+    public DownloadPolicy(long minSizeBytes) {
+        this.minSizeBytes = minSizeBytes;
+    }
+
+    /**
+     * @return Policy that keeps files of any size, for downloads outside of a crawl
+     */
+    public static DownloadPolicy unrestricted() {
+        return new DownloadPolicy(0);
+    }
+
+    /**
+     * Claims the content for the calling download, unless another file of this crawl already holds it.
+     * While another download holds an unresolved claim on the same content, this waits until it is resolved,
+     * so the returned path always exists.
+     * @param digest Content digest
+     * @return Path of the file of this crawl with the same content, empty if the caller now holds the claim and has to
+     * {@link #resolveDigest(String, String) resolve} or {@link #releaseDigest(String) release} it
+     */
+    public Optional<String> claimDigest(String digest) {
+        while (true) {
+            CompletableFuture<String> claim = new CompletableFuture<>();
+            CompletableFuture<String> existing = committedDigests.putIfAbsent(digest, claim);
+            if (existing == null) {
+                return Optional.empty();
+            }
+            String path = existing.join();
+            if (path != null) {
+                return Optional.of(path);
+            }
+            // The holder gave up, try to claim the content again
+            committedDigests.remove(digest, existing);
+        }
+    }
+
+    /**
+     * Resolves a claim taken by {@link #claimDigest(String)}
+     * @param path File that holds the content now, the committed file or the stored copy it duplicates
+     */
+    public void resolveDigest(String digest, String path) {
+        committedDigests.get(digest).complete(path);
+    }
+
+    /**
+     * Gives up a claim taken by {@link #claimDigest(String)} whose file could not be committed
+     */
+    public void releaseDigest(String digest) {
+        CompletableFuture<String> claim = committedDigests.remove(digest);
+        if (claim != null) {
+            claim.complete(null);
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.url_media_save.service.download;
+
+import java.io.IOException;
+
+/**
+ * Thrown when a segment request is not answered with the requested byte range,
+ * the resource has to be downloaded again as a single stream
+ */
+public class RangeNotHonouredException extends IOException {
+    public RangeNotHonouredException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.url_media_save.service.download;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.service.duplicate.ContentDigest;
+import com.example.url_media_save.service.http.HttpTransport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.RandomAccessFile;
+import java.net.http.HttpResponse;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads a large file as several byte ranges in parallel.
+ * The file is preallocated to its full size and every segment writes at its own offset,
+ * so segments need no coordination besides a shared file channel. A segment that breaks off
+ * is requested again from its last received byte.
+ * Every segment but the first needs its own {@link DownloadPermits}, a file is split into fewer segments
+ * while the host has no connections to spare.
+ */
+@Slf4j
+@Component
+public class SegmentedDownloader {
+    private static final int HTTP_OK = 200;
+
+    private final MediaSaverConfig config;
+    private final HttpTransport httpTransport;
+    private final TransferBufferPool transferBufferPool;
+    private final DownloadPermits permits;
+
+    public SegmentedDownloader(MediaSaverConfig config, HttpTransport httpTransport, TransferBufferPool transferBufferPool,
+                               DownloadPermits permits) {
+        this.config = config;
+        this.httpTransport = httpTransport;
+        this.transferBufferPool = transferBufferPool;
+        this.permits = permits;
+    }
+
+    /**
+     * Checks whether the response announces a resource that can be fetched in segments:
+     * large enough, served uncompressed with byte ranges and a validator that pins the version
+     * @param response First response for the resource, its body is not touched
+     * @return true if {@link #download(String, HttpResponse, Path)} can be used
+     */
+    public boolean supports(HttpResponse<InputStream> response) {
+        if (!config.isSegmentedDownloadsEnabled() || config.getDownloadSegments() < 2 || response.statusCode() != HTTP_OK) {
+            return false;
+        }
+        boolean acceptsRanges = response.headers().firstValue("Accept-Ranges").orElse("").toLowerCase().contains("bytes");
+        OptionalLong length = response.headers().firstValueAsLong("Content-Length");
+        return acceptsRanges
+                && length.isPresent()
+                && length.getAsLong() >= config.getSegmentedDownloadThresholdBytes()
+                && HttpTransport.rangeValidator(response) != null;
+    }
+
+    /**
+     * Downloads the resource into the part file.
+     * The first segment is read from the body of {@code firstResponse}, the others are requested with Range.
+     * Segments arrive out of order, so the digest is computed by reading the assembled file once.
+     * @param url The URL being downloaded
+     * @param firstResponse Response accepted by {@link #supports(HttpResponse)}
+     * @param partFile File to write, it is overwritten
+     * @return Hex digest of the complete content
+     * @throws RangeNotHonouredException if the server stopped answering with the requested ranges
+     * @throws IOException if any segment fails after all attempts, the remaining segments are cancelled
+     */
+    public String download(String url, HttpResponse<InputStream> firstResponse, Path partFile) throws IOException {
+        // The first segment is read over the connection the caller already holds permits for
+        int extraConnections = permits.tryAcquire(url, config.getDownloadSegments() - 1);
+        try {
+            return download(url, firstResponse, partFile, 1 + extraConnections);
+        } finally {
+            permits.release(url, extraConnections);
+        }
+    }
+
+    private String download(String url, HttpResponse<InputStream> firstResponse, Path partFile, int segments) throws IOException {
+        long length = firstResponse.headers().firstValueAsLong("Content-Length").orElseThrow();
+        String validator = HttpTransport.rangeValidator(firstResponse);
+        long segmentSize = (length + segments - 1) / segments;
+        log.debug("Downloading {} ({} bytes) in {} segments", url, length, segments);
+
+        try (RandomAccessFile file = new RandomAccessFile(partFile.toFile(), "rw");
+             ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            file.setLength(length);
+            FileChannel channel = file.getChannel();
+            List<Future<Void>> futures = new ArrayList<>(segments);
+            for (int i = 0; i < segments; i++) {
+                long from = i * segmentSize;
+                long to = Math.min(length, from + segmentSize) - 1;
+                if (from > to) {
+                    break;
+                }
+                HttpResponse<InputStream> initial = i == 0 ? firstResponse : null;
+                futures.add(executor.submit(() -> {
+                    downloadSegment(url, validator, initial, channel, from, to);
+                    return null;
+                }));
+            }
+            if (futures.isEmpty()) {
+                firstResponse.body().close();
+            }
+            awaitAll(futures);
+        }
+        return ContentDigest.ofFile(partFile);
+    }
+
+    /**
+     * Fetches bytes {@code from}..{@code to} into the channel, resuming from the last written byte on failure
+     * @param initial Response to read the first attempt from, null to request the range
+     */
+    private void downloadSegment(String url, String validator, HttpResponse<InputStream> initial,
+                                 FileChannel channel, long from, long to) throws IOException {
+        long[] position = {from};
+        for (int attempt = 1; ; attempt++) {
+            HttpResponse<InputStream> response = attempt == 1 && initial != null
+                    ? initial
+                    : httpTransport.send(httpTransport.rangeRequest(url, validator, position[0], to));
+            if (response != initial && !HttpTransport.isRangeStartingAt(response, position[0])) {
+                HttpTransport.ensureSuccess(response);
+                response.body().close();
+                // The resource changed or the server stopped honouring ranges, resuming would mix versions
+                throw new RangeNotHonouredException("Server answered " + response.statusCode() + " instead of bytes "
+                        + position[0] + "-" + to + " of " + url);
+            }
+            try (InputStream is = httpTransport.bodyOf(response)) {
+                // position[0] advances as bytes are written, so a retry knows where to resume
+                transferBufferPool.transfer(is, channel, position[0], to - position[0] + 1, null, position);
+                return;
+            } catch (IOException e) {
+                if (attempt >= config.getDownloadAttempts() || Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                log.warn("Segment {}-{} of {} broke off at {}, resuming (attempt {}): {}",
+                        from, to, url, position[0], attempt + 1, e.getMessage());
+            }
+        }
+    }
+
+    private static void awaitAll(List<Future<Void>> futures) throws IOException {
+        try {
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IOException("Segmented download failed", e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Segmented download interrupted");
+        }
+    }
+}
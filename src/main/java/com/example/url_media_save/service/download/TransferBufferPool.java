@@ -0,0 +1,95 @@
+package com.example.url_media_save.service.download;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import org.springframework.stereotype.Component;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Buffers shared by all downloads for writing response bodies to files.
+ * <p>
+ * A heap buffer written to a {@link FileChannel} is first copied into a temporary direct buffer the JDK caches
+ * per thread. Every download runs on its own virtual thread, so that cache is never reused and every file
+ * allocates and frees native memory again. The HTTP client hands out the body only as an {@link InputStream},
+ * which reads into a {@code byte[]}, so one copy from heap to native memory cannot be avoided. Each pooled entry
+ * pairs a read array with a direct buffer of the same size: bodies are read straight into the array and copied
+ * once into the direct buffer, nothing is allocated per transfer. Up to {@link MediaSaverConfig#getTransferBufferPoolSize()}
+ * idle entries are kept, further concurrent transfers allocate their own and drop them afterwards.
+ */
+@Component
+public class TransferBufferPool {
+    private final int bufferSize;
+    private final BlockingQueue<Buffers> idle;
+
+    public TransferBufferPool(MediaSaverConfig config) {
+        this.bufferSize = config.getTransferBufferSize();
+        this.idle = new ArrayBlockingQueue<>(Math.max(1, config.getTransferBufferPoolSize()));
+    }
+
+    /**
+     * Writes the stream to the channel starting at {@code position}, without changing the channel position
+     * @param in Stream to read until its end or until {@code limit} bytes are written
+     * @param channel File to write to
+     * @param position File offset of the first byte
+     * @param limit Number of bytes expected, -1 to read to the end of the stream
+     * @param digest Digest updated with every written byte, may be null
+     * @param progress Incremented by the bytes written, even if the transfer fails, so a retry knows where to resume
+     * @throws EOFException if the stream ends before {@code limit} bytes
+     */
+    public void transfer(InputStream in, FileChannel channel, long position, long limit,
+                         MessageDigest digest, long[] progress) throws IOException {
+        Buffers buffers = acquire();
+        byte[] chunk = buffers.chunk();
+        ByteBuffer buffer = buffers.direct();
+        try {
+            long written = 0;
+            while (limit < 0 || written < limit) {
+                int read = in.read(chunk, 0, limit < 0 ? chunk.length : (int) Math.min(chunk.length, limit - written));
+                if (read == -1) {
+                    if (limit >= 0) {
+                        throw new EOFException("Stream ended after " + written + " of " + limit + " bytes");
+                    }
+                    break;
+                }
+                buffer.clear();
+                buffer.put(chunk, 0, read).flip();
+                int offset = 0;
+                while (buffer.hasRemaining()) {
+                    int count = channel.write(buffer, position + written);
+                    // Only bytes that reached the file are digested, a resumed transfer continues the same digest
+                    if (digest != null) {
+                        digest.update(chunk, offset, count);
+                    }
+                    offset += count;
+                    written += count;
+                    progress[0] += count;
+                }
+            }
+        } finally {
+            release(buffers);
+        }
+    }
+
+    private Buffers acquire() {
+        Buffers buffers = idle.poll();
+        return buffers != null ? buffers : new Buffers(new byte[bufferSize], ByteBuffer.allocateDirect(bufferSize));
+    }
+
+    private void release(Buffers buffers) {
+        buffers.direct().clear();
+        idle.offer(buffers);
+    }
+
+    /**
+     * Read array and the direct buffer its bytes are written from
+     */
+    private record Buffers(byte[] chunk, ByteBuffer direct) {
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.url_media_save.service.duplicate;
+
+import lombok.experimental.UtilityClass;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Content digest used to recognize files with the same content.
+ * Files from arbitrary sites are matched across all requests, so the digest has to be collision resistant.
+ */
+@UtilityClass
+public class ContentDigest {
+    public static final String ALGORITHM = "SHA-256";
+
+    /**
+     * @return New digest instance, digests are not thread-safe so every file gets its own one
+     */
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(ALGORITHM + " is not supported by the JVM", e);
+        }
+    }
+
+    /**
+     * @return Hex representation of the digest value
+     */
+    public static String toHex(byte[] digest) {
+        return HexFormat.of().formatHex(digest);
+    }
+
+    /**
+     * Reads the whole file and returns its hex digest
+     * @param file The file to hash
+     * @return Hex digest of the file content
+     */
+    public static String ofFile(Path file) throws IOException {
+        MessageDigest md = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        try (InputStream in = Files.newInputStream(file)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                md.update(buffer, 0, read);
+            }
+        }
+        return toHex(md.digest());
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.url_media_save.service.duplicate;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.db.service.ContentIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Optional;
+
+/**
+ * Checks downloads against the persistent content index before they are committed.
+ * Content that is already stored is not committed again: the download is dropped, or the destination becomes
+ * a hard link to the stored copy when {@link MediaSaverConfig#isHardLinkKnownContent()} is set,
+ * so repeated crawls do not keep the same bytes twice.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class KnownContentFilter {
+    private final ContentIndexService contentIndexService;
+    private final MediaSaverConfig config;
+
+    /**
+     * Looks the content up in the index
+     * @param digest Content digest of the download
+     * @param destFile Path the download is about to be committed to
+     * @param sizeBytes Size of the download
+     * @return Path of the already stored copy, empty if the content is new or the index is disabled or unavailable
+     */
+    public Optional<String> findStoredCopy(String digest, Path destFile, long sizeBytes) {
+        if (!config.isContentIndexEnabled()) {
+            return Optional.empty();
+        }
+        try {
+            return contentIndexService.findStoredCopy(digest, sizeBytes)
+                    .filter(storedCopy -> !storedCopy.equals(destFile.toAbsolutePath().toString()));
+        } catch (DataAccessException e) {
+            log.warn("Content index unavailable, keeping {}: {}", destFile, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Indexes a committed download as the stored copy of its content.
+     * Only files that are on disk are indexed, so a lookup never resolves to a file that is still being moved.
+     * @param digest Content digest of the download
+     * @param destFile Path the download was committed to
+     * @param sizeBytes Size of the download
+     */
+    public void registerStoredCopy(String digest, Path destFile, long sizeBytes) {
+        if (!config.isContentIndexEnabled()) {
+            return;
+        }
+        try {
+            contentIndexService.registerStoredCopy(digest, destFile.toAbsolutePath().toString(), sizeBytes);
+        } catch (DataAccessException e) {
+            log.warn("Content index unavailable, {} is not indexed: {}", destFile, e.getMessage());
+        }
+    }
+
+    /**
+     * Commits a download whose content is already stored, which means nothing unless hard links are enabled
+     * @param destFile Path the download would have been committed to
+     * @param storedCopy Path of the stored copy
+     * @return false if the link could not be created and the download has to be committed as a regular file
+     */
+    public boolean commitStoredCopy(Path destFile, String storedCopy) {
+        if (!config.isHardLinkKnownContent()) {
+            return true;
+        }
+        // Link next to the destination first, so an existing file there stays in place if linking is not possible
+        Path link = destFile.resolveSibling(destFile.getFileName() + ".link");
+        try {
+            Files.createLink(link, Path.of(storedCopy));
+            Files.move(link, destFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException | UnsupportedOperationException e) {
+            log.warn("Could not link {} to its stored copy {}: {}", destFile, storedCopy, e.getMessage());
+            return false;
+        } finally {
+            try {
+                Files.deleteIfExists(link);
+            } catch (IOException e) {
+                log.debug("Could not delete {}: {}", link, e.getMessage());
+            }
+        }
+    }
+}
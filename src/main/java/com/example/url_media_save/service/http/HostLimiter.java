@@ -0,0 +1,191 @@
+package com.example.url_media_save.service.http;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Request rate limit and circuit breaker of a single host.
+ * <p>
+ * Requests take tokens from a bucket refilled at the current rate. The rate starts at
+ * {@link MediaSaverConfig#getHostRequestsPerSecond()}, is halved whenever the host answers 429 or 503
+ * and grows back slowly with every successful response. A Retry-After header stops all requests
+ * to the host for the given time.
+ * <p>
+ * After {@link MediaSaverConfig#getCircuitBreakerFailureThreshold()} consecutive failures
+ * (connection errors, timeouts or 5xx) the circuit opens and requests fail immediately for
+ * {@link MediaSaverConfig#getCircuitBreakerOpenMs()}. Then a single trial request is let through,
+ * its outcome closes or reopens the circuit.
+ */
+@Slf4j
+final class HostLimiter {
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * Rate regained with every successful response, in requests per second
+     */
+    private static final double RATE_INCREASE = 0.5;
+
+    private enum Circuit { CLOSED, OPEN, HALF_OPEN }
+
+    private final String host;
+    private final double maxRate;
+    private final double minRate;
+    private final double burst;
+    private final long maxRetryAfterNanos;
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+    // Waiting happens outside of the lock, so virtual threads never block while holding it
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private double rate;
+    private double tokens;
+    private long refilledAt;
+    private long blockedUntil;
+    private Circuit circuit = Circuit.CLOSED;
+    private int consecutiveFailures;
+    private long openUntil;
+    private boolean trialInFlight;
+    private long trialStartedAt;
+
+    HostLimiter(String host, MediaSaverConfig config) {
+        this(host, config, System::nanoTime);
+    }
+
+    HostLimiter(String host, MediaSaverConfig config, LongSupplier nanoClock) {
+        this.host = host;
+        this.maxRate = config.getHostRequestsPerSecond();
+        this.minRate = Math.min(config.getHostMinRequestsPerSecond(), maxRate);
+        this.burst = Math.max(1, config.getHostBurst());
+        this.maxRetryAfterNanos = TimeUnit.MILLISECONDS.toNanos(config.getMaxRetryAfterMs());
+        this.failureThreshold = config.getCircuitBreakerFailureThreshold();
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(config.getCircuitBreakerOpenMs());
+        this.nanoClock = nanoClock;
+        this.rate = maxRate;
+        this.tokens = burst;
+        this.refilledAt = nanoClock.getAsLong();
+    }
+
+    /**
+     * Waits until a request to the host is allowed
+     * @throws HostUnavailableException if the circuit is open
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    void acquire() throws HostUnavailableException, InterruptedIOException {
+        long waitNanos = reserve();
+        if (waitNanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + host);
+            }
+        }
+    }
+
+    /**
+     * Takes a token, going into debt if there is none, and returns how long the caller has to wait for it
+     */
+    long reserve() throws HostUnavailableException {
+        lock.lock();
+        try {
+            long now = nanoClock.getAsLong();
+            checkCircuit(now);
+            refill(now);
+            tokens -= 1;
+            long waitForToken = tokens < 0 ? (long) (-tokens / rate * NANOS_PER_SECOND) : 0;
+            return Math.max(waitForToken, blockedUntil - now);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void checkCircuit(long now) throws HostUnavailableException {
+        // A trial whose outcome was never recorded, e.g. because its thread was interrupted, must not block the host forever
+        if ((circuit == Circuit.OPEN && now >= openUntil) || (trialInFlight && now - trialStartedAt >= openNanos)) {
+            circuit = Circuit.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (circuit == Circuit.OPEN || (circuit == Circuit.HALF_OPEN && trialInFlight)) {
+            throw new HostUnavailableException(host, Duration.ofNanos(Math.max(0, openUntil - now)));
+        }
+        if (circuit == Circuit.HALF_OPEN) {
+            trialInFlight = true;
+            trialStartedAt = now;
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(burst, tokens + (now - refilledAt) * rate / NANOS_PER_SECOND);
+        refilledAt = now;
+    }
+
+    /**
+     * Records the status of a response
+     * @param retryAfter Value of the Retry-After header, null if there is none
+     */
+    void onResponse(int statusCode, Duration retryAfter) {
+        boolean throttled = statusCode == 429 || statusCode == 503;
+        boolean failed = statusCode >= 500;
+        lock.lock();
+        try {
+            long now = nanoClock.getAsLong();
+            if (throttled) {
+                refill(now);
+                rate = Math.max(minRate, rate / 2);
+                tokens = Math.min(tokens, 0);
+                if (retryAfter != null) {
+                    blockedUntil = Math.max(blockedUntil, now + Math.min(retryAfter.toNanos(), maxRetryAfterNanos));
+                }
+                log.warn("{} answered {}, slowing down to {} requests/s{}", host, statusCode, String.format("%.1f", rate),
+                        retryAfter != null ? ", retrying after " + retryAfter.toSeconds() + " s" : "");
+            } else if (!failed) {
+                rate = Math.min(maxRate, rate + RATE_INCREASE);
+            }
+            if (failed) {
+                recordFailure(now);
+            } else {
+                recordSuccess();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records a request that got no response: connection error or timeout
+     */
+    void onFailure() {
+        lock.lock();
+        try {
+            recordFailure(nanoClock.getAsLong());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void recordSuccess() {
+        if (circuit != Circuit.CLOSED) {
+            log.info("{} is back, closing the circuit", host);
+        }
+        circuit = Circuit.CLOSED;
+        consecutiveFailures = 0;
+        trialInFlight = false;
+    }
+
+    private void recordFailure(long now) {
+        consecutiveFailures++;
+        if (circuit == Circuit.HALF_OPEN || (circuit == Circuit.CLOSED && consecutiveFailures >= failureThreshold)) {
+            circuit = Circuit.OPEN;
+            openUntil = now + openNanos;
+            trialInFlight = false;
+            log.warn("{} failed {} times in a row, failing its requests for {} ms",
+                    host, consecutiveFailures, TimeUnit.NANOSECONDS.toMillis(openNanos));
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.url_media_save.service.http;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * Thrown instead of sending a request to a host whose circuit breaker is open
+ */
+@Getter
+public class HostUnavailableException extends IOException {
+    private final String host;
+    /**
+     * Time until the next request to the host is let through
+     */
+    private final Duration retryIn;
+
+    public HostUnavailableException(String host, Duration retryIn) {
+        super("Host " + host + " is unavailable, retry in " + retryIn.toMillis() + " ms");
+        this.host = host;
+        this.retryIn = retryIn;
+    }
+}
@@ -0,0 +1,18 @@
+package com.example.url_media_save.service.http;
+
+import lombok.Getter;
+
+import java.io.IOException;
+
+/**
+ * Thrown when the server answers with an error status code
+ */
+@Getter
+public class HttpStatusException extends IOException {
+    private final int statusCode;
+
+    public HttpStatusException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+}
@@ -0,0 +1,339 @@
+package com.example.url_media_save.service.http;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.service.metrics.MediaMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509ExtendedTrustManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Single HTTP client shared by page fetching and media downloading.
+ * The underlying {@link HttpClient} keeps connections alive between requests and negotiates HTTP/2
+ * where the server supports it, so requests to the same host reuse one connection instead of
+ * paying for a new TCP and TLS handshake every time.
+ * Every request passes the {@link HostLimiter} of its host, which paces requests and fails them fast
+ * while the host is down.
+ */
+@Slf4j
+@Component
+public class HttpTransport {
+    private static final String USER_AGENT =
+            "Mozilla/5.0 (Windows NT 10.0; Win64; x64) AppleWebKit/537.36 (KHTML, like Gecko) Chrome/124.0.0.0 Safari/537.36";
+    private static final String ACCEPT = "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8";
+    private static final String ACCEPT_LANGUAGE = "ru-RU,ru;q=0.9,en-US;q=0.8,en;q=0.7";
+
+    private final MediaSaverConfig config;
+    private final MediaMetrics metrics;
+    private final HttpClient client;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder httpsRequests = new LongAdder();
+    private final LongAdder tlsHandshakes = new LongAdder();
+    private final ReadTimeoutWatchdog readTimeoutWatchdog;
+    private final Map<String, HostLimiter> hostLimiters = new ConcurrentHashMap<>();
+
+    public HttpTransport(MediaSaverConfig config, MediaMetrics metrics) {
+        this.config = config;
+        this.metrics = metrics;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(config.getConnectTimeout()))
+                .sslContext(new CountingSslContext(trustAllSslContext(), tlsHandshakes))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        this.readTimeoutWatchdog = new ReadTimeoutWatchdog(Duration.ofMillis(config.getReadTimeout()));
+    }
+
+    /**
+     * Creates a GET request builder with the default headers and read timeout
+     * @param url The URL to request
+     * @return Request builder that can be extended with extra headers
+     * @throws IOException if the URL is not a valid URI
+     */
+    public HttpRequest.Builder newRequest(String url) throws IOException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed URL: " + url, e);
+        }
+        return HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(config.getReadTimeout()))
+                .header("User-Agent", USER_AGENT)
+                .header("Accept", ACCEPT)
+                .header("Accept-Language", ACCEPT_LANGUAGE)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+    }
+
+    /**
+     * Sends the request and returns the response whatever its status code is
+     * @param request The request to send
+     * @return Response with the body as a stream which the caller must close
+     * @throws IOException if the request fails or the thread is interrupted
+     */
+    public HttpResponse<InputStream> send(HttpRequest request) throws IOException {
+        return send(request, HttpResponse.BodyHandlers.ofInputStream());
+    }
+
+    /**
+     * Sends the request once the rate limit of its host allows it, and reports the outcome to the limiter
+     * @throws HostUnavailableException if the circuit breaker of the host is open
+     */
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        HostLimiter limiter = limiterOf(request.uri());
+        limiter.acquire();
+        countRequest(request);
+        long start = System.nanoTime();
+        HttpResponse<T> response;
+        try {
+            response = client.send(request, bodyHandler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request to " + request.uri() + " interrupted");
+        } catch (IOException e) {
+            metrics.recordResponse(request.uri(), 0, System.nanoTime() - start);
+            limiter.onFailure();
+            throw e;
+        }
+        metrics.recordResponse(request.uri(), response.statusCode(), System.nanoTime() - start);
+        limiter.onResponse(response.statusCode(), retryAfter(response).orElse(null));
+        return response;
+    }
+
+    /**
+     * Performs a HEAD request asking for the unencoded representation, so Content-Length is the size of the resource
+     * @param url The URL to request
+     * @return Response of any status
+     * @throws IOException if the request fails or the thread is interrupted
+     */
+    public HttpResponse<Void> head(String url) throws IOException {
+        HttpRequest request = newRequest(url)
+                .setHeader("Accept-Encoding", "identity")
+                .method("HEAD", HttpRequest.BodyPublishers.noBody())
+                .build();
+        return send(request, HttpResponse.BodyHandlers.discarding());
+    }
+
+    /**
+     * Performs a GET request with the default headers
+     * @param url The URL to request
+     * @return Successful response with the body as a stream which the caller must close
+     * @throws IOException if the request fails or the server responds with an error status
+     */
+    public HttpResponse<InputStream> get(String url) throws IOException {
+        return ensureSuccess(send(newRequest(url).build()));
+    }
+
+    /**
+     * Closes the body of an error response and turns it into an exception
+     * @param response The response to check
+     * @return The same response if its status is below 400
+     * @throws HttpStatusException if the status code is 400 or above
+     */
+    public static HttpResponse<InputStream> ensureSuccess(HttpResponse<InputStream> response) throws IOException {
+        if (response.statusCode() >= 400) {
+            response.body().close();
+            throw new HttpStatusException(response.statusCode(),
+                    "Server returned HTTP " + response.statusCode() + " for " + response.uri());
+        }
+        return response;
+    }
+
+    /**
+     * Returns the response body, transparently unpacking gzip-encoded responses.
+     * A read that blocks longer than the configured read timeout fails with a {@link java.net.SocketTimeoutException}.
+     * @param response The response to read
+     * @return Decoded body stream
+     */
+    public InputStream bodyOf(HttpResponse<InputStream> response) throws IOException {
+        InputStream body = encodedBodyOf(response);
+        if (isGzipEncoded(response)) {
+            try {
+                return new GZIPInputStream(body);
+            } catch (IOException e) {
+                // A broken gzip header must not leave the guarded stream registered and the connection open
+                body.close();
+                throw e;
+            }
+        }
+        return body;
+    }
+
+    /**
+     * Returns the response body as it was sent, for reading past it without decoding.
+     * A read that blocks longer than the configured read timeout fails with a {@link java.net.SocketTimeoutException}.
+     * @param response The response to read
+     * @return Body stream, still encoded
+     */
+    public InputStream encodedBodyOf(HttpResponse<InputStream> response) {
+        return readTimeoutWatchdog.guard(response.body());
+    }
+
+    /**
+     * @return true if the body is gzip-encoded, i.e. its bytes differ from the bytes of the resource
+     */
+    public static boolean isGzipEncoded(HttpResponse<?> response) {
+        return response.headers().firstValue("Content-Encoding").orElse("").toLowerCase().contains("gzip");
+    }
+
+    /**
+     * Parses the Retry-After header, given either in seconds or as an HTTP date
+     * @return Time to wait before the next request, empty if the header is missing or malformed
+     */
+    public static Optional<Duration> retryAfter(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After").flatMap(value -> {
+            try {
+                return Optional.of(Duration.ofSeconds(Math.max(0, Long.parseLong(value.trim()))));
+            } catch (NumberFormatException e) {
+                try {
+                    Duration untilDate = Duration.between(Instant.now(),
+                            ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant());
+                    return Optional.of(untilDate.isNegative() ? Duration.ZERO : untilDate);
+                } catch (DateTimeParseException ex) {
+                    return Optional.empty();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return Size of the resource from Content-Length, empty if it is not sent or the body is gzip-encoded
+     */
+    public static OptionalLong declaredLength(HttpResponse<?> response) {
+        // The length of a gzip-encoded body is the compressed size, it says nothing about the file size
+        return isGzipEncoded(response) ? OptionalLong.empty() : response.headers().firstValueAsLong("Content-Length");
+    }
+
+    /**
+     * Returns the validator that guarantees a byte range belongs to the same version of the resource, for If-Range.
+     * Gzip-encoded bodies never qualify since their ranges do not map to ranges of the decoded content.
+     * @return Strong ETag or Last-Modified date, null if ranges of this response must not be requested
+     */
+    public static String rangeValidator(HttpResponse<?> response) {
+        if (isGzipEncoded(response)) {
+            return null;
+        }
+        Optional<String> etag = response.headers().firstValue("ETag").filter(e -> !e.startsWith("W/"));
+        return etag.orElseGet(() -> response.headers().firstValue("Last-Modified").orElse(null));
+    }
+
+    /**
+     * Builds a request for the bytes of the resource starting at {@code from}
+     * @param url The URL to request
+     * @param validator Validator from {@link #rangeValidator(HttpResponse)}
+     * @param from First byte to request
+     * @param to Last byte to request (inclusive), or -1 for the rest of the resource
+     */
+    public HttpRequest rangeRequest(String url, String validator, long from, long to) throws IOException {
+        return newRequest(url)
+                .setHeader("Accept-Encoding", "identity")
+                .header("Range", "bytes=" + from + "-" + (to >= 0 ? String.valueOf(to) : ""))
+                .header("If-Range", validator)
+                .build();
+    }
+
+    /**
+     * @return true if the response is the partial content starting exactly at {@code from}
+     */
+    public static boolean isRangeStartingAt(HttpResponse<?> response, long from) {
+        return response.statusCode() == 206
+                && response.headers().firstValue("Content-Range").orElse("").startsWith("bytes " + from + "-");
+    }
+
+    /**
+     * @return Current request and handshake counters
+     */
+    public TransportStats stats() {
+        return new TransportStats(requests.sum(), httpsRequests.sum(), tlsHandshakes.sum());
+    }
+
+    private HostLimiter limiterOf(URI uri) {
+        String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+        return hostLimiters.computeIfAbsent(host, h -> new HostLimiter(h, config));
+    }
+
+    private void countRequest(HttpRequest request) {
+        requests.increment();
+        if ("https".equalsIgnoreCase(request.uri().getScheme())) {
+            httpsRequests.increment();
+        }
+    }
+
+    private static SSLContext trustAllSslContext() {
+        TrustManager[] trustAllCertificates = new TrustManager[] {
+                new X509ExtendedTrustManager() {
+                    @Override
+                    public X509Certificate[] getAcceptedIssuers() {
+                        return new X509Certificate[0];
+                    }
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] certs, String authType) {
+                        // Do nothing. Just allow them all.
+                    }
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] certs, String authType) {
+                        // Do nothing. Just allow them all.
+                    }
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] certs, String authType, Socket socket) {
+                        // Do nothing. Just allow them all.
+                    }
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] certs, String authType, Socket socket) {
+                        // Do nothing. Just allow them all.
+                    }
+                    @Override
+                    public void checkClientTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {
+                        // Do nothing. Just allow them all.
+                    }
+                    @Override
+                    public void checkServerTrusted(X509Certificate[] certs, String authType, SSLEngine engine) {
+                        // Do nothing. Just allow them all (hostnames included).
+                    }
+                }
+        };
+        try {
+            SSLContext sc = SSLContext.getInstance("TLS");
+            sc.init(null, trustAllCertificates, new SecureRandom());
+            return sc;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to initialize SSL context", e);
+        }
+    }
+
+    @PreDestroy
+    void shutdown() {
+        client.shutdownNow();
+        readTimeoutWatchdog.shutdown();
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.url_media_save.service.http;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Read timeout for response bodies.
+ * {@link java.net.http.HttpClient} only limits the time until the response headers arrive, so a body that stops
+ * flowing would block its reader forever. Guarded streams that stay blocked in a single read longer than the timeout
+ * are closed, which makes the pending read fail with a {@link SocketTimeoutException}.
+ */
+final class ReadTimeoutWatchdog {
+    private final long timeoutNanos;
+    private final Set<GuardedInputStream> openStreams = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "read-timeout-watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    ReadTimeoutWatchdog(Duration timeout) {
+        this.timeoutNanos = timeout.toNanos();
+        long checkIntervalMs = Math.max(100, Math.min(1000, timeout.toMillis() / 2));
+        scheduler.scheduleAtFixedRate(this::expireStalledReads, checkIntervalMs, checkIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    InputStream guard(InputStream in) {
+        GuardedInputStream guarded = new GuardedInputStream(in);
+        openStreams.add(guarded);
+        return guarded;
+    }
+
+    void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    private void expireStalledReads() {
+        long now = System.nanoTime();
+        for (GuardedInputStream stream : openStreams) {
+            long readStartedAt = stream.readStartedAt;
+            if (readStartedAt != 0 && now - readStartedAt > timeoutNanos) {
+                stream.expire();
+            }
+        }
+    }
+
+    private final class GuardedInputStream extends FilterInputStream {
+        /**
+         * System.nanoTime() when the pending read started, 0 when no read is in progress
+         */
+        private volatile long readStartedAt;
+        private volatile boolean expired;
+
+        private GuardedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            readStartedAt = System.nanoTime();
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw timeoutOr(e);
+            } finally {
+                readStartedAt = 0;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            readStartedAt = System.nanoTime();
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                throw timeoutOr(e);
+            } finally {
+                readStartedAt = 0;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            openStreams.remove(this);
+            super.close();
+        }
+
+        private void expire() {
+            expired = true;
+            openStreams.remove(this);
+            try {
+                in.close();
+            } catch (IOException ignored) {
+                // The reader gets its timeout anyway
+            }
+        }
+
+        private IOException timeoutOr(IOException e) {
+            if (!expired) {
+                return e;
+            }
+            SocketTimeoutException timeout = new SocketTimeoutException("Read timed out");
+            timeout.initCause(e);
+            return timeout;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.url_media_save.service.http;
+
+import lombok.Value;
+
+/**
+ * Snapshot of {@link HttpTransport} counters
+ */
+@Value
+public class TransportStats {
+    long requests;
+    long httpsRequests;
+    long tlsHandshakes;
+
+    /**
+     * @return number of https requests that reused an already open TLS connection
+     */
+    public long getHandshakesAvoided() {
+        return Math.max(0, httpsRequests - tlsHandshakes);
+    }
+
+    /**
+     * @param earlier Snapshot taken before this one
+     * @return Counters accumulated between the two snapshots
+     */
+    public TransportStats minus(TransportStats earlier) {
+        return new TransportStats(requests - earlier.requests,
+                httpsRequests - earlier.httpsRequests,
+                tlsHandshakes - earlier.tlsHandshakes);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.url_media_save.service.job;
+
+import com.example.url_media_save.dto.JobEventDto;
+
+import java.io.IOException;
+
+/**
+ * Destination of the result stream of a job, e.g. an SSE emitter or an NDJSON response body
+ */
+@FunctionalInterface
+public interface JobEventSink {
+    /**
+     * @throws IOException if the client went away, the stream is ended
+     */
+    void send(JobEventDto event) throws IOException;
+}
@@ -0,0 +1,172 @@
+package com.example.url_media_save.service.job;
+
+import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.dto.FileResultDto;
+import com.example.url_media_save.dto.InfoResponseDto;
+import com.example.url_media_save.dto.JobStatusDto;
+import com.example.url_media_save.dto.SavedFileDto;
+import com.example.url_media_save.dto.UrlRequestDto;
+import com.example.url_media_save.service.crawl.CrawlListener;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * State of a single asynchronous crawl.
+ * Collects progress counters and per-file results while the crawl runs, so clients can poll the status
+ * or follow the results as they arrive. Results are kept until the job is evicted, a client that
+ * subscribes late gets all of them from the start.
+ */
+public class MediaJob implements CrawlListener {
+    @Getter
+    private final String id;
+    @Getter
+    private final UrlRequestDto request;
+    private final LocalDateTime createdTime = LocalDateTime.now();
+    private final AtomicInteger pagesProcessed = new AtomicInteger();
+    private final AtomicInteger linksFound = new AtomicInteger();
+    private final AtomicInteger filesProcessed = new AtomicInteger();
+    private final AtomicInteger filesSaved = new AtomicInteger();
+    private final AtomicInteger filesFailed = new AtomicInteger();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final List<FileResultDto> results = new ArrayList<>();
+    private volatile JobStatus status = JobStatus.QUEUED;
+    private volatile LocalDateTime startedTime;
+    private volatile LocalDateTime finishedTime;
+    private volatile InfoResponseDto result;
+    private volatile String error;
+
+    public MediaJob(String id, UrlRequestDto request) {
+        this.id = id;
+        this.request = request;
+    }
+
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    public LocalDateTime getFinishedTime() {
+        return finishedTime;
+    }
+
+    void start() {
+        startedTime = LocalDateTime.now();
+        status = JobStatus.RUNNING;
+    }
+
+    void complete(InfoResponseDto result) {
+        this.result = result;
+        finish(JobStatus.COMPLETED);
+    }
+
+    void fail(String error) {
+        this.error = error;
+        finish(JobStatus.FAILED);
+    }
+
+    private void finish(JobStatus finalStatus) {
+        lock.lock();
+        try {
+            finishedTime = LocalDateTime.now();
+            status = finalStatus;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void pageProcessed(String url, int linksFound) {
+        pagesProcessed.incrementAndGet();
+        this.linksFound.addAndGet(linksFound);
+    }
+
+    @Override
+    public void downloadCompleted(DownloadResultDto result) {
+        List<FileResultDto> files = new ArrayList<>();
+        for (SavedFileDto savedFile : result.getSavedFiles()) {
+            files.add(FileResultDto.builder()
+                    .url(savedFile.getUrl())
+                    .outcome(savedFile.getDuplicateOf() != null ? FileResultDto.Outcome.DUPLICATE : FileResultDto.Outcome.SAVED)
+                    .path(savedFile.getDuplicateOf() != null ? null : savedFile.getPath())
+                    .sizeBytes(savedFile.getSizeBytes())
+                    .duplicateOf(savedFile.getDuplicateOf())
+                    .build());
+            if (savedFile.getDuplicateOf() == null) {
+                bytesSaved.add(savedFile.getSizeBytes());
+            }
+        }
+        result.getNotModified().forEach(url -> files.add(fileResult(url, FileResultDto.Outcome.NOT_MODIFIED)));
+        result.getTooSmall().forEach(url -> files.add(fileResult(url, FileResultDto.Outcome.TOO_SMALL)));
+        result.getFailedDownloads().forEach(url -> files.add(fileResult(url, FileResultDto.Outcome.FAILED)));
+        result.getInvalidUrls().forEach(url -> files.add(fileResult(url, FileResultDto.Outcome.INVALID)));
+        result.getUrlsWithoutExtension().forEach(url -> files.add(fileResult(url, FileResultDto.Outcome.NO_EXTENSION)));
+
+        filesProcessed.addAndGet(result.getTotalProcessed());
+        filesSaved.addAndGet(result.getTotalSuccessful());
+        filesFailed.addAndGet(result.getTotalFailed());
+        lock.lock();
+        try {
+            results.addAll(files);
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static FileResultDto fileResult(String url, FileResultDto.Outcome outcome) {
+        return FileResultDto.builder().url(url).outcome(outcome).build();
+    }
+
+    /**
+     * Waits until there are results after {@code from} or the job is finished
+     * @param from Number of results the caller has already seen
+     * @param timeout Longest time to wait
+     * @return Results after {@code from}, empty if none arrived in time or the job is finished
+     * @throws InterruptedException if the waiting thread is interrupted
+     */
+    public List<FileResultDto> awaitResults(int from, long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lock();
+        try {
+            while (results.size() <= from && !status.isFinished() && nanos > 0) {
+                nanos = changed.awaitNanos(nanos);
+            }
+            return results.size() > from ? List.copyOf(results.subList(from, results.size())) : List.of();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Snapshot of the current status and progress counters
+     */
+    public JobStatusDto toStatusDto() {
+        return JobStatusDto.builder()
+                .jobId(id)
+                .status(status)
+                .url(request.getUrl())
+                .createdTime(createdTime)
+                .startedTime(startedTime)
+                .finishedTime(finishedTime)
+                .pagesProcessed(pagesProcessed.get())
+                .linksFound(linksFound.get())
+                .filesProcessed(filesProcessed.get())
+                .filesSaved(filesSaved.get())
+                .filesFailed(filesFailed.get())
+                .bytesSaved(bytesSaved.sum())
+                .result(result)
+                .error(error)
+                .build();
+    }
+}
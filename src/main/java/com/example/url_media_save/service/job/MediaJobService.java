@@ -0,0 +1,149 @@
+package com.example.url_media_save.service.job;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.db.entity.UrlRequestEntity;
+import com.example.url_media_save.db.service.DownloadLedgerRecorder;
+import com.example.url_media_save.db.service.UrlService;
+import com.example.url_media_save.dto.FileResultDto;
+import com.example.url_media_save.dto.InfoResponseDto;
+import com.example.url_media_save.dto.JobEventDto;
+import com.example.url_media_save.dto.UrlRequestDto;
+import com.example.url_media_save.service.SaveMediaService;
+import com.example.url_media_save.service.metrics.MediaMetrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs crawls as background jobs.
+ * At most {@link MediaSaverConfig#getJobParallelism()} crawls run at the same time and at most
+ * {@link MediaSaverConfig#getJobQueueCapacity()} wait for their turn, further submissions are rejected
+ * instead of piling up. Finished jobs are kept for {@link MediaSaverConfig#getJobRetentionMinutes()} minutes.
+ */
+@Slf4j
+@Service
+public class MediaJobService {
+    private static final long STREAM_WAIT_SECONDS = 15;
+
+    private final SaveMediaService saveMediaService;
+    private final UrlService urlService;
+    private final MediaSaverConfig config;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, MediaJob> jobs = new ConcurrentHashMap<>();
+
+    public MediaJobService(SaveMediaService saveMediaService, UrlService urlService, MediaSaverConfig config,
+                           MediaMetrics metrics) {
+        this.saveMediaService = saveMediaService;
+        this.urlService = urlService;
+        this.config = config;
+        this.executor = new ThreadPoolExecutor(config.getJobParallelism(), config.getJobParallelism(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(config.getJobQueueCapacity()),
+                Thread.ofVirtual().name("media-job-", 0).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        metrics.registerPool("jobs", config.getJobParallelism(), executor::getActiveCount, () -> executor.getQueue().size());
+    }
+
+    /**
+     * Queues a crawl
+     * @param request The crawl parameters
+     * @return The queued job
+     * @throws RejectedExecutionException if the queue is full
+     */
+    public MediaJob submit(UrlRequestDto request) {
+        MediaJob job = new MediaJob(UUID.randomUUID().toString(), request);
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            jobs.remove(job.getId());
+            throw e;
+        }
+        log.info("Queued job {} for {}", job.getId(), request.getUrl());
+        return job;
+    }
+
+    /**
+     * @param id Job id
+     * @return The job, empty if it is unknown or already evicted
+     */
+    public Optional<MediaJob> find(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    /**
+     * Sends every file result of the job to the sink as it becomes available, starting with the ones
+     * already known, and ends with a {@link JobEventDto#FINISHED} event once the job is finished
+     * @param job The job to follow
+     * @param sink Destination of the events
+     * @throws IOException if the sink fails
+     * @throws InterruptedException if the streaming thread is interrupted
+     */
+    public void streamResults(MediaJob job, JobEventSink sink) throws IOException, InterruptedException {
+        int sent = 0;
+        while (true) {
+            // Read the status first: once it is finished no more results can be added after the next batch
+            boolean finished = job.getStatus().isFinished();
+            List<FileResultDto> batch = job.awaitResults(sent, STREAM_WAIT_SECONDS, TimeUnit.SECONDS);
+            for (FileResultDto file : batch) {
+                sink.send(JobEventDto.builder().type(JobEventDto.FILE).file(file).build());
+            }
+            sent += batch.size();
+            if (finished && batch.isEmpty()) {
+                break;
+            }
+        }
+        sink.send(JobEventDto.builder().type(JobEventDto.FINISHED).job(job.toStatusDto()).build());
+    }
+
+    private void run(MediaJob job) {
+        UrlRequestDto request = job.getRequest();
+        job.start();
+        log.info("Started job {} for {}", job.getId(), request.getUrl());
+        try {
+            UrlRequestEntity entity = urlService.save(request);
+            InfoResponseDto result;
+            try (DownloadLedgerRecorder ledger = urlService.ledger(entity, job)) {
+                result = saveMediaService.getMediaFromUrl(request.getUrl(), request.getPathToSave(),
+                        request.getNotSaveFileInKb(), request.getCheckNested(), ledger);
+            }
+            urlService.saveResultInfo(entity, result.getRequiredTimeMs(), result.getDeleteDuplicates(),
+                    result.getTotalProcessed(), result.getTotalSuccessful(), result.getTotalFailed());
+            job.complete(result);
+            log.info("Finished job {} in {} ms", job.getId(), result.getRequiredTimeMs());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.fail("Interrupted");
+        } catch (Exception e) {
+            log.error("Job {} failed: {}", job.getId(), e.getMessage(), e);
+            job.fail(e.getMessage());
+        }
+    }
+
+    /**
+     * Forgets jobs that finished longer than the retention time ago
+     */
+    @Scheduled(fixedDelay = 60_000)
+    void evictFinishedJobs() {
+        LocalDateTime threshold = LocalDateTime.now().minusMinutes(config.getJobRetentionMinutes());
+        jobs.values().removeIf(job -> job.getStatus().isFinished() && job.getFinishedTime().isBefore(threshold));
+    }
+
+    @PreDestroy
+    void shutdown() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.url_media_save.service.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Meters of the crawl and download hot paths, published through Actuator under /actuator/metrics.
+ * Host-tagged meters are capped by {@code MetricsConfig}, so a crawl over many hosts cannot flood the registry.
+ */
+@Component
+public class MediaMetrics {
+    public static final String HTTP_RESPONSE_TIME = "media.http.response.time";
+    public static final String DOWNLOAD_DURATION = "media.download.duration";
+    public static final String DOWNLOAD_BYTES = "media.download.bytes";
+    public static final String DOWNLOAD_THROUGHPUT = "media.download.throughput";
+    public static final String DOWNLOAD_FILES = "media.download.files";
+    public static final String PAGE_PARSE_TIME = "media.page.parse.time";
+    public static final String CRAWL_DURATION = "media.crawl.duration";
+    public static final String POOL_BUSY = "media.pool.busy";
+    public static final String POOL_WAITING = "media.pool.waiting";
+    public static final String POOL_SATURATION = "media.pool.saturation";
+
+    public static final String HOST_TAG = "host";
+    private static final String UNKNOWN_HOST = "unknown";
+
+    private final MeterRegistry registry;
+    private final Timer pageParseTime;
+    private final Timer crawlDuration;
+
+    public MediaMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.pageParseTime = Timer.builder(PAGE_PARSE_TIME)
+                .description("Time to read a page and extract its links")
+                .register(registry);
+        this.crawlDuration = Timer.builder(CRAWL_DURATION)
+                .description("Time of a whole crawl, from the first page to the last download")
+                .register(registry);
+    }
+
+    /**
+     * Records the time from sending a request until its response headers arrived
+     * @param uri Requested URI
+     * @param statusCode Response status, 0 if the request failed without a response
+     */
+    public void recordResponse(URI uri, int statusCode, long nanos) {
+        Timer.builder(HTTP_RESPONSE_TIME)
+                .description("Time until the response headers arrive")
+                .tag(HOST_TAG, hostOf(uri))
+                .tag("status", statusCode == 0 ? "IO_ERROR" : (statusCode / 100) + "xx")
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records a finished download
+     * @param url Downloaded URL
+     * @param outcome Outcome of the download
+     * @param bytes Bytes received, 0 if nothing was stored
+     */
+    public void recordDownload(String url, DownloadOutcome outcome, long bytes, long nanos) {
+        String host = hostOf(url);
+        Timer.builder(DOWNLOAD_DURATION)
+                .description("Time of a single media download including writing the file")
+                .tag(HOST_TAG, host)
+                .tag("outcome", outcome.tagValue())
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder(DOWNLOAD_FILES)
+                .description("Processed media files")
+                .tag("outcome", outcome.tagValue())
+                .register(registry)
+                .increment();
+        if (bytes > 0) {
+            Counter.builder(DOWNLOAD_BYTES)
+                    .description("Bytes of downloaded media, its rate is the download bandwidth")
+                    .baseUnit("bytes")
+                    .tag(HOST_TAG, host)
+                    .register(registry)
+                    .increment(bytes);
+            if (nanos > 0) {
+                DistributionSummary.builder(DOWNLOAD_THROUGHPUT)
+                        .description("Transfer rate of single downloads")
+                        .baseUnit("bytes/s")
+                        .tag(HOST_TAG, host)
+                        .register(registry)
+                        .record(bytes * 1e9 / nanos);
+            }
+        }
+    }
+
+    public Timer pageParseTime() {
+        return pageParseTime;
+    }
+
+    public Timer crawlDuration() {
+        return crawlDuration;
+    }
+
+    /**
+     * Publishes the usage of a bounded pool
+     * @param pool Pool name, used as the {@code pool} tag
+     * @param capacity Number of slots
+     * @param busy Slots in use
+     * @param waiting Tasks waiting for a slot
+     */
+    public void registerPool(String pool, int capacity, IntSupplier busy, IntSupplier waiting) {
+        Gauge.builder(POOL_BUSY, busy, IntSupplier::getAsInt)
+                .description("Slots of the pool in use")
+                .tag("pool", pool)
+                .register(registry);
+        Gauge.builder(POOL_WAITING, waiting, IntSupplier::getAsInt)
+                .description("Tasks waiting for a slot of the pool")
+                .tag("pool", pool)
+                .register(registry);
+        Gauge.builder(POOL_SATURATION, busy, b -> capacity > 0 ? (double) b.getAsInt() / capacity : 0)
+                .description("Share of the pool in use, 1 means new tasks have to wait")
+                .tag("pool", pool)
+                .register(registry);
+    }
+
+    private static String hostOf(String url) {
+        try {
+            return hostOf(URI.create(url));
+        } catch (IllegalArgumentException e) {
+            return UNKNOWN_HOST;
+        }
+    }
+
+    private static String hostOf(URI uri) {
+        return uri.getHost() != null ? uri.getHost().toLowerCase(Locale.ROOT) : UNKNOWN_HOST;
+    }
+
+    /**
+     * Outcome of a download, used as the {@code outcome} tag
+     */
+    public enum DownloadOutcome {
+        SAVED, DUPLICATE, NOT_MODIFIED, TOO_SMALL, NOT_MEDIA, FAILED;
+
+        private String tagValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.url_media_save.service.retry;
+
+import com.example.url_media_save.service.http.HostUnavailableException;
+import com.example.url_media_save.service.http.HttpStatusException;
+
+import java.io.IOException;
+
+/**
+ * Kind of a download failure, every kind has its own retry policy
+ */
+public enum FailureClass {
+    /**
+     * Connection errors, timeouts and broken transfers
+     */
+    NETWORK,
+    /**
+     * 429 and 503 responses, the host asked us to slow down
+     */
+    THROTTLED,
+    /**
+     * Other 5xx responses and hosts whose circuit breaker is open
+     */
+    SERVER_ERROR,
+    /**
+     * 4xx responses, retrying will not help
+     */
+    CLIENT_ERROR;
+
+    public static FailureClass of(IOException e) {
+        if (e instanceof HostUnavailableException) {
+            return SERVER_ERROR;
+        }
+        if (e instanceof HttpStatusException statusException) {
+            int status = statusException.getStatusCode();
+            if (status == 429 || status == 503) {
+                return THROTTLED;
+            }
+            if (status == 408) {
+                return NETWORK;
+            }
+            return status >= 500 ? SERVER_ERROR : CLIENT_ERROR;
+        }
+        return NETWORK;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.url_media_save.service.retry;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import lombok.Value;
+
+/**
+ * How often and how soon a failed download is tried again.
+ * The delay doubles with every failed attempt, starting at {@code initialDelayMs} and capped at {@code maxDelayMs}.
+ */
+@Value
+public class RetryPolicy {
+    /**
+     * Attempts in total, including the one that failed first
+     */
+    int maxAttempts;
+    long initialDelayMs;
+    long maxDelayMs;
+
+    public static RetryPolicy of(FailureClass failureClass, MediaSaverConfig config) {
+        return switch (failureClass) {
+            case NETWORK -> new RetryPolicy(config.getRetryNetworkMaxAttempts(),
+                    config.getRetryNetworkInitialDelayMs(), config.getRetryMaxDelayMs());
+            case THROTTLED -> new RetryPolicy(config.getRetryThrottledMaxAttempts(),
+                    config.getRetryThrottledInitialDelayMs(), config.getRetryMaxDelayMs());
+            case SERVER_ERROR -> new RetryPolicy(config.getRetryServerErrorMaxAttempts(),
+                    config.getRetryServerErrorInitialDelayMs(), config.getRetryMaxDelayMs());
+            case CLIENT_ERROR -> new RetryPolicy(1, 0, 0);
+        };
+    }
+}
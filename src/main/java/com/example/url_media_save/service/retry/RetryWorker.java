@@ -0,0 +1,64 @@
+package com.example.url_media_save.service.retry;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.db.entity.FailedDownloadEntity;
+import com.example.url_media_save.db.service.FailedDownloadService;
+import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.service.download.DownloadEngine;
+import com.example.url_media_save.service.download.DownloadPolicy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Retries failed downloads in the background.
+ * Due downloads are handed to the {@link DownloadEngine}, so retries share its concurrency limits and
+ * the host rate limits with regular crawls, and the worker never waits for them. A retry that fails again
+ * is rescheduled by {@link FailedDownloadService#recordFailure}, one that succeeds is removed from the queue.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class RetryWorker {
+    private final FailedDownloadService failedDownloadService;
+    private final DownloadEngine downloadEngine;
+    private final MediaSaverConfig config;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    @Scheduled(fixedDelayString = "#{@mediaSaverConfig.retryPollIntervalMs}")
+    void retryDue() {
+        if (!config.isRetryEnabled()) {
+            return;
+        }
+        int capacity = config.getRetryBatchSize() - inFlight.get();
+        if (capacity <= 0) {
+            return;
+        }
+        List<FailedDownloadEntity> due = failedDownloadService.claimDue(capacity);
+        if (!due.isEmpty()) {
+            log.info("Retrying {} failed downloads", due.size());
+        }
+        for (FailedDownloadEntity failed : due) {
+            inFlight.incrementAndGet();
+            downloadEngine.submit(failed.getUrl(), failed.getPathToSave(), new DownloadPolicy(failed.getMinSizeBytes()))
+                    .whenComplete((result, error) -> {
+                        inFlight.decrementAndGet();
+                        if (error == null && isDone(result)) {
+                            log.debug("Retry of {} succeeded after {} failed attempts", failed.getUrl(), failed.getAttempts());
+                            failedDownloadService.remove(failed.getId());
+                        }
+                    });
+        }
+    }
+
+    /**
+     * @return true if the URL needs no further attempt, i.e. it did not fail again
+     */
+    private static boolean isDone(DownloadResultDto result) {
+        return result.getFailedDownloads().isEmpty();
+    }
+}
@@ -0,0 +1,11 @@
+create table content_digest_entity
+(
+	digest varchar not null,
+	path varchar not null,
+	size_bytes bigint,
+	created_time timestamp
+);
+
+alter table content_digest_entity
+	add constraint content_digest_entity_pk
+		primary key (digest);
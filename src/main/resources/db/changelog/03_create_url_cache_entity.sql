@@ -0,0 +1,13 @@
+create table url_cache_entity
+(
+	url varchar not null,
+	etag varchar,
+	last_modified varchar,
+	content_length bigint,
+	path varchar not null,
+	updated_time timestamp
+);
+
+alter table url_cache_entity
+	add constraint url_cache_entity_pk
+		primary key (url);
@@ -0,0 +1,25 @@
+create table failed_download_entity
+(
+	id bigserial,
+	url varchar not null,
+	path_to_save varchar not null,
+	min_size_bytes bigint not null default 0,
+	failure_class varchar not null,
+	last_error varchar,
+	attempts int not null,
+	status varchar not null,
+	next_attempt_time timestamp not null,
+	created_time timestamp,
+	updated_time timestamp
+);
+
+alter table failed_download_entity
+	add constraint failed_download_entity_pk
+		primary key (id);
+
+create unique index failed_download_entity_url_path_uindex
+	on failed_download_entity (url, path_to_save);
+
+create index failed_download_entity_due_index
+	on failed_download_entity (next_attempt_time)
+	where status = 'PENDING';
@@ -0,0 +1,8 @@
+-- Ids are taken from a sequence in blocks of 50, so Hibernate can batch inserts instead of
+-- reading back a generated id after every row. The first block starts after the existing rows.
+create sequence url_request_entity_seq increment by 50;
+
+select setval('url_request_entity_seq', coalesce((select max(id) from url_request_entity), 0) + 50, false);
+
+alter table url_request_entity
+	alter column id drop default;
@@ -0,0 +1,26 @@
+create table download_ledger
+(
+	id bigserial,
+	request_id bigint,
+	url varchar not null,
+	host varchar,
+	status varchar not null,
+	size_bytes bigint,
+	digest varchar,
+	latency_ms bigint,
+	finished_time timestamp not null
+);
+
+alter table download_ledger
+	add constraint download_ledger_pk
+		primary key (id);
+
+create index download_ledger_request_id_index
+	on download_ledger (request_id);
+
+-- Time range scans per host, e.g. the slowest hosts of the last week, are answered from the index alone
+create index download_ledger_finished_time_index
+	on download_ledger (finished_time, host) include (latency_ms, size_bytes, status);
+
+create index download_ledger_host_finished_time_index
+	on download_ledger (host, finished_time);
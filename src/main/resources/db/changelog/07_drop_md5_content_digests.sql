@@ -0,0 +1,2 @@
+-- Content is indexed by SHA-256 now, MD5 digests would never match again
+delete from content_digest_entity where length(digest) <> 64;
@@ -0,0 +1,142 @@
+package com.example.url_media_save.db.service;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.db.entity.UrlRequestEntity;
+import com.example.url_media_save.db.mapper.UrlMapper;
+import com.example.url_media_save.db.repository.DownloadLedgerRepository;
+import com.example.url_media_save.db.repository.UrlRepository;
+import com.example.url_media_save.dto.DownloadLedgerEntryDto;
+import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.dto.FileResultDto;
+import com.example.url_media_save.dto.SavedFileDto;
+import com.example.url_media_save.dto.UrlRequestDto;
+import com.example.url_media_save.service.crawl.CrawlListener;
+import org.junit.jupiter.api.Test;
+import org.mapstruct.factory.Mappers;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class RequestAuditWriterTest {
+    private final Map<Long, UrlRequestEntity> rows = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final UrlMapper urlMapper = Mappers.getMapper(UrlMapper.class);
+    private final MediaSaverConfig config = new MediaSaverConfig();
+
+    @SuppressWarnings("unchecked")
+    private UrlRepository repository() {
+        UrlRepository repository = mock(UrlRepository.class);
+        when(repository.saveAll(any())).thenAnswer(invocation -> {
+            List<UrlRequestEntity> saved = new ArrayList<>();
+            for (UrlRequestEntity entity : (Iterable<UrlRequestEntity>) invocation.getArgument(0)) {
+                entity.setId(sequence.incrementAndGet());
+                rows.put(entity.getId(), entity);
+                saved.add(entity);
+            }
+            return saved;
+        });
+        when(repository.findAllById(any())).thenAnswer(invocation -> {
+            List<UrlRequestEntity> found = new ArrayList<>();
+            ((Iterable<Long>) invocation.getArgument(0)).forEach(id -> found.add(rows.get(id)));
+            return found;
+        });
+        return repository;
+    }
+
+    @Test
+    void everyRequestEndsUpAsOneRowWithItsResult() throws InterruptedException {
+        UrlRepository repository = repository();
+        RequestAuditWriter writer = new RequestAuditWriter(repository, mock(DownloadLedgerRepository.class), urlMapper,
+                mock(PlatformTransactionManager.class), config);
+        UrlService urlService = new UrlService(writer, urlMapper, config);
+
+        List<UrlRequestEntity> requests = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            UrlRequestDto dto = new UrlRequestDto();
+            dto.setUrl("https://example.com/" + i);
+            requests.add(urlService.save(dto));
+        }
+        for (int i = 0; i < requests.size(); i++) {
+            urlService.saveResultInfo(requests.get(i), 10L, 0, i, i, 0);
+        }
+        writer.shutdown();
+
+        assertEquals(100, rows.size());
+        for (int i = 0; i < requests.size(); i++) {
+            UrlRequestEntity row = rows.get(requests.get(i).getId());
+            assertNotNull(row);
+            assertEquals("https://example.com/" + i, row.getUrl());
+            assertEquals(i, row.getTotalProcessed());
+        }
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void ledgerRowsCarryTheIdOfTheirRequest() throws InterruptedException {
+        DownloadLedgerRepository ledgerRepository = mock(DownloadLedgerRepository.class);
+        List<DownloadLedgerEntryDto> ledger = new ArrayList<>();
+        when(ledgerRepository.insert(any())).thenAnswer(invocation -> {
+            List<DownloadLedgerEntryDto> entries = invocation.getArgument(0);
+            ledger.addAll(entries);
+            return (long) entries.size();
+        });
+        config.setDownloadLedgerChunkSize(2);
+        RequestAuditWriter writer = new RequestAuditWriter(repository(), ledgerRepository, urlMapper,
+                mock(PlatformTransactionManager.class), config);
+        UrlService urlService = new UrlService(writer, urlMapper, config);
+
+        UrlRequestDto dto = new UrlRequestDto();
+        dto.setUrl("https://example.com/");
+        UrlRequestEntity entity = urlService.save(dto);
+        List<DownloadResultDto> seen = new ArrayList<>();
+        try (DownloadLedgerRecorder recorder = urlService.ledger(entity, new CrawlListener() {
+            @Override
+            public void downloadCompleted(DownloadResultDto result) {
+                seen.add(result);
+            }
+        })) {
+            recorder.downloadCompleted(result(List.of(SavedFileDto.builder()
+                    .url("https://Media.example.com/a.jpg").path("/tmp/a.jpg").sizeBytes(42).digest("ab12").build()), List.of()));
+            recorder.downloadCompleted(result(List.of(), List.of("https://example.com/b.png")));
+            recorder.downloadCompleted(result(List.of(), List.of("https://example.com/c.png")));
+        }
+        writer.shutdown();
+
+        assertEquals(3, seen.size());
+        assertEquals(3, ledger.size());
+        assertTrue(ledger.stream().allMatch(entry -> entity.getId().equals(entry.getRequestId())));
+        DownloadLedgerEntryDto saved = ledger.getFirst();
+        assertEquals(FileResultDto.Outcome.SAVED, saved.getStatus());
+        assertEquals("media.example.com", saved.getHost());
+        assertEquals(42L, saved.getSizeBytes());
+        assertEquals("ab12", saved.getDigest());
+        assertEquals(FileResultDto.Outcome.FAILED, ledger.get(2).getStatus());
+    }
+
+    private static DownloadResultDto result(List<SavedFileDto> savedFiles, List<String> failed) {
+        return DownloadResultDto.builder()
+                .totalProcessed(savedFiles.size() + failed.size())
+                .totalSuccessful(savedFiles.size())
+                .totalFailed(failed.size())
+                .successfulDownloads(savedFiles.stream().map(SavedFileDto::getUrl).toList())
+                .failedDownloads(failed)
+                .invalidUrls(List.of())
+                .urlsWithoutExtension(List.of())
+                .savedFiles(savedFiles)
+                .notModified(List.of())
+                .tooSmall(List.of())
+                .processingTimeMs(5)
+                .build();
+    }
+}
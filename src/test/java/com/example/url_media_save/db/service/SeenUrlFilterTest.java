@@ -0,0 +1,75 @@
+package com.example.url_media_save.db.service;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeenUrlFilterTest {
+    @TempDir
+    Path tempDir;
+
+    private MediaSaverConfig config(long expectedUrls) {
+        MediaSaverConfig config = new MediaSaverConfig();
+        config.setSeenUrlFilterFile(tempDir.resolve("seen-urls.bloom").toString());
+        config.setSeenUrlFilterExpectedUrls(expectedUrls);
+        config.setSeenUrlFilterFalsePositiveRate(0.01);
+        return config;
+    }
+
+    @Test
+    void incompleteFilterSendsEveryLookupToTheDatabase() {
+        SeenUrlFilter filter = new SeenUrlFilter(config(1000));
+
+        assertFalse(filter.isComplete());
+        assertTrue(filter.mightContain("https://site.com/file/never-added.jpg"));
+    }
+
+    @Test
+    void addedUrlsAreAlwaysFoundAndFewOthersAre() {
+        SeenUrlFilter filter = new SeenUrlFilter(config(10_000));
+        filter.markComplete();
+        for (int i = 0; i < 10_000; i++) {
+            filter.add("https://site.com/file/" + i + ".jpg");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("https://site.com/file/" + i + ".jpg"));
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightContain("https://other.com/file/" + i + ".jpg")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 300, "False positives: " + falsePositives);
+    }
+
+    @Test
+    void filterSurvivesARestart() {
+        SeenUrlFilter filter = new SeenUrlFilter(config(1000));
+        filter.add("https://site.com/file/a.jpg");
+        filter.markComplete();
+        filter.close();
+
+        SeenUrlFilter reopened = new SeenUrlFilter(config(1000));
+        assertTrue(reopened.isComplete());
+        assertTrue(reopened.mightContain("https://site.com/file/a.jpg"));
+        assertFalse(reopened.mightContain("https://site.com/file/b.jpg"));
+    }
+
+    @Test
+    void filterIsRebuiltWhenItsSizeChanges() {
+        SeenUrlFilter filter = new SeenUrlFilter(config(1000));
+        filter.add("https://site.com/file/a.jpg");
+        filter.markComplete();
+        filter.close();
+
+        SeenUrlFilter resized = new SeenUrlFilter(config(5000));
+        assertFalse(resized.isComplete());
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.url_media_save.load;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Embedded HTTP server serving a generated gallery site, so the whole crawl can be driven without network.
+ * <p>
+ * {@code /file/g<n>.html} is a page linking {@code mediaPerPage} files {@code /file/p<n>m<i>.jpg} and up to
+ * {@code childPages} nested pages {@code /file/g<n * childPages + 1..>.html}, until {@code pages} pages exist.
+ * All links use the relative {@code /file/} form the link extractor resolves against the site URL, the only form
+ * it finds on a plain HTTP site. Media files have unique content of
+ * {@code mediaSizeBytes} bytes. Every response is delayed by {@code latencyMs}. Pages are gzip-encoded when the client
+ * accepts it, media files only every {@code gzipMediaEvery}-th one, as servers usually do not compress media.
+ */
+class LocalMediaServer implements AutoCloseable {
+    private final HttpServer server;
+    private final int pages;
+    private final int childPages;
+    private final int mediaPerPage;
+    private final int mediaSizeBytes;
+    private final long latencyMs;
+    private final int gzipMediaEvery;
+
+    LocalMediaServer(int pages, int childPages, int mediaPerPage, int mediaSizeBytes, long latencyMs, int gzipMediaEvery)
+            throws IOException {
+        this.pages = pages;
+        this.childPages = childPages;
+        this.mediaPerPage = mediaPerPage;
+        this.mediaSizeBytes = mediaSizeBytes;
+        this.latencyMs = latencyMs;
+        this.gzipMediaEvery = gzipMediaEvery;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.createContext("/file/", exchange -> handle(exchange, this::file));
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    /**
+     * @return URL of the root page of the gallery
+     */
+    String rootUrl() {
+        return "http://localhost:" + server.getAddress().getPort() + "/file/g0.html";
+    }
+
+    /**
+     * @return Number of media files a crawl of all pages finds
+     */
+    int mediaFiles() {
+        return pages * mediaPerPage;
+    }
+
+    private void handle(HttpExchange exchange, ResponseWriter writer) throws IOException {
+        try (exchange) {
+            if (latencyMs > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMs);
+            }
+            writer.write(exchange);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void file(HttpExchange exchange) throws IOException {
+        String name = lastSegment(exchange);
+        if (name.startsWith("g") && name.endsWith(".html")) {
+            page(exchange, Integer.parseInt(name.substring(1, name.length() - ".html".length())));
+        } else {
+            media(exchange, name);
+        }
+    }
+
+    private void page(HttpExchange exchange, int page) throws IOException {
+        if (page >= pages) {
+            exchange.sendResponseHeaders(404, -1);
+            return;
+        }
+        StringBuilder html = new StringBuilder("<html><head><title>Gallery ").append(page).append("</title></head><body>");
+        for (int i = 0; i < mediaPerPage; i++) {
+            html.append("<img src=\"/file/p").append(page).append('m').append(i).append(".jpg\">");
+        }
+        for (int child = page * childPages + 1; child <= page * childPages + childPages && child < pages; child++) {
+            html.append("<a href=\"/file/g").append(child).append(".html\">Page ").append(child).append("</a>");
+        }
+        html.append("</body></html>");
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        send(exchange, html.toString().getBytes(StandardCharsets.UTF_8), acceptsGzip(exchange));
+    }
+
+    private void media(HttpExchange exchange, String name) throws IOException {
+        int seed = name.hashCode();
+        byte[] content = new byte[mediaSizeBytes];
+        for (int i = 0; i < content.length; i++) {
+            content[i] = (byte) (seed * 31 + i * 17 + (i >> 8));
+        }
+        // Unique content, so no file is dropped as a duplicate of another one
+        for (int i = 0; i < Math.min(4, content.length); i++) {
+            content[i] = (byte) (seed >> (i * 8));
+        }
+        exchange.getResponseHeaders().set("Content-Type", "image/jpeg");
+        boolean gzip = gzipMediaEvery > 0 && Math.floorMod(seed, gzipMediaEvery) == 0 && acceptsGzip(exchange);
+        send(exchange, content, gzip);
+    }
+
+    private static void send(HttpExchange exchange, byte[] body, boolean gzip) throws IOException {
+        if (gzip) {
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 2);
+            try (OutputStream os = new GZIPOutputStream(compressed)) {
+                os.write(body);
+            }
+            body = compressed.toByteArray();
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    private static boolean acceptsGzip(HttpExchange exchange) {
+        String acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+        return acceptEncoding != null && acceptEncoding.contains("gzip");
+    }
+
+    private static String lastSegment(HttpExchange exchange) {
+        String path = exchange.getRequestURI().getPath();
+        return path.substring(path.lastIndexOf('/') + 1);
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    @FunctionalInterface
+    private interface ResponseWriter {
+        void write(HttpExchange exchange) throws IOException;
+    }
+}
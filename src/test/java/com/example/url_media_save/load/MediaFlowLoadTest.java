@@ -0,0 +1,164 @@
+package com.example.url_media_save.load;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.db.service.ContentIndexService;
+import com.example.url_media_save.db.service.FailedDownloadService;
+import com.example.url_media_save.db.service.UrlCacheService;
+import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.dto.InfoResponseDto;
+import com.example.url_media_save.service.MediaParser;
+import com.example.url_media_save.service.MediaTypeRegistry;
+import com.example.url_media_save.service.SaveMediaService;
+import com.example.url_media_save.service.Saver;
+import com.example.url_media_save.service.crawl.CrawlListener;
+import com.example.url_media_save.service.crawl.UrlNormalizer;
+import com.example.url_media_save.service.download.DownloadEngine;
+import com.example.url_media_save.service.download.DownloadPermits;
+import com.example.url_media_save.service.download.SegmentedDownloader;
+import com.example.url_media_save.service.download.TransferBufferPool;
+import com.example.url_media_save.service.duplicate.KnownContentFilter;
+import com.example.url_media_save.service.http.HttpTransport;
+import com.example.url_media_save.service.metrics.MediaMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Throughput of the whole /mediaget flow against a {@link LocalMediaServer}.
+ * Runs {@code load.concurrency} rounds, each with that many crawls of the complete gallery at the same time,
+ * and prints files/s, MB/s and download latency per round. The database is replaced by mocks, so the numbers
+ * measure fetching, parsing, downloading and writing only.
+ * <p>
+ * Excluded from the regular build, run it with {@code mvn test -Pload-test}. The gallery is sized with
+ * {@code -Dload.pages}, {@code -Dload.mediaPerPage}, {@code -Dload.mediaSizeKb}, {@code -Dload.latencyMs}
+ * and {@code -Dload.gzipMediaEvery}, the rounds with {@code -Dload.concurrency=1,2,4,8}.
+ */
+@Tag("load")
+class MediaFlowLoadTest {
+    private static final int PAGES = Integer.getInteger("load.pages", 21);
+    private static final int CHILD_PAGES = 4;
+    private static final int MEDIA_PER_PAGE = Integer.getInteger("load.mediaPerPage", 20);
+    private static final int MEDIA_SIZE_BYTES = Integer.getInteger("load.mediaSizeKb", 256) * 1024;
+    private static final long LATENCY_MS = Long.getLong("load.latencyMs", 5);
+    private static final int GZIP_MEDIA_EVERY = Integer.getInteger("load.gzipMediaEvery", 5);
+    private static final int[] CONCURRENCY = Arrays.stream(System.getProperty("load.concurrency", "1,2,4,8").split(","))
+            .map(String::trim)
+            .mapToInt(Integer::parseInt)
+            .toArray();
+
+    @Test
+    void crawlThroughputAtIncreasingConcurrency(@TempDir Path tempDir) throws Exception {
+        SaveMediaService saveMediaService = saveMediaService();
+        try (LocalMediaServer server = new LocalMediaServer(PAGES, CHILD_PAGES, MEDIA_PER_PAGE, MEDIA_SIZE_BYTES,
+                LATENCY_MS, GZIP_MEDIA_EVERY)) {
+            // A gallery without files would let an empty crawl pass
+            assertTrue(server.mediaFiles() > 0, "The gallery must contain media files");
+            System.out.printf("%nGallery: %d pages, %d files of %d KB, %d ms latency%n",
+                    PAGES, server.mediaFiles(), MEDIA_SIZE_BYTES / 1024, LATENCY_MS);
+            System.out.printf("%-12s %10s %10s %10s %12s %12s%n",
+                    "concurrency", "files", "files/s", "MB/s", "p50 ms", "p99 ms");
+            for (int concurrency : CONCURRENCY) {
+                Round round = runRound(saveMediaService, server, tempDir.resolve("round-" + concurrency), concurrency);
+                System.out.printf("%-12d %10d %10.1f %10.1f %12d %12d%n", concurrency, round.files(),
+                        round.files() * 1000.0 / round.elapsedMs(),
+                        round.bytes() / 1_048_576.0 * 1000.0 / round.elapsedMs(),
+                        round.latencyPercentile(0.5), round.latencyPercentile(0.99));
+                assertEquals((long) server.mediaFiles() * concurrency, round.files(), "Every file must be saved");
+                assertEquals((long) server.mediaFiles() * concurrency, savedFiles(tempDir.resolve("round-" + concurrency)),
+                        "Every file must be on disk");
+            }
+        }
+    }
+
+    private static Round runRound(SaveMediaService saveMediaService, LocalMediaServer server, Path folder,
+                                  int concurrency) throws Exception {
+        Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+        CrawlListener listener = new CrawlListener() {
+            @Override
+            public void downloadCompleted(DownloadResultDto result) {
+                latencies.add(result.getProcessingTimeMs());
+            }
+        };
+        long start = System.nanoTime();
+        List<InfoResponseDto> responses = new ArrayList<>();
+        try (ExecutorService crawls = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<InfoResponseDto>> futures = new ArrayList<>();
+            for (int i = 0; i < concurrency; i++) {
+                String crawlFolder = folder.resolve("crawl-" + i).toString();
+                futures.add(crawls.submit(() -> saveMediaService.getMediaFromUrl(server.rootUrl(), crawlFolder, 0, true, listener)));
+            }
+            for (Future<InfoResponseDto> future : futures) {
+                responses.add(future.get());
+            }
+        }
+        long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        long files = responses.stream().mapToLong(InfoResponseDto::getTotalSuccessful).sum();
+        return new Round(files, files * MEDIA_SIZE_BYTES, elapsedMs, latencies.stream().sorted().toList());
+    }
+
+    /**
+     * @return Number of complete files below the folder
+     */
+    private static long savedFiles(Path folder) throws IOException {
+        try (Stream<Path> files = Files.walk(folder)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> !file.getFileName().toString().endsWith(".part"))
+                    .count();
+        }
+    }
+
+    /**
+     * Wires the crawl the way the application context does, with the database services mocked
+     */
+    private static SaveMediaService saveMediaService() {
+        MediaSaverConfig config = new MediaSaverConfig();
+        config.setContentIndexEnabled(false);
+        config.setConditionalDownloadsEnabled(false);
+        config.setCrawlMaxDepth(3);
+        config.setCrawlMaxPages(PAGES);
+        // All traffic goes to one host, its politeness limits would measure nothing but themselves
+        config.setMaxConcurrentDownloadsPerHost(config.getMaxConcurrentDownloads());
+        config.setHostRequestsPerSecond(1_000_000);
+        config.setHostBurst(1_000_000);
+        MediaMetrics metrics = new MediaMetrics(new SimpleMeterRegistry());
+        HttpTransport transport = new HttpTransport(config, metrics);
+        TransferBufferPool buffers = new TransferBufferPool(config);
+        MediaTypeRegistry mediaTypes = new MediaTypeRegistry(config);
+        DownloadPermits permits = new DownloadPermits(config, metrics);
+        Saver saver = new Saver(config, transport, mock(UrlCacheService.class), new SegmentedDownloader(config, transport, buffers, permits),
+                buffers, new KnownContentFilter(mock(ContentIndexService.class), config), mock(FailedDownloadService.class), metrics, mediaTypes);
+        return new SaveMediaService(new MediaParser(transport, metrics), saver, new DownloadEngine(saver, config, permits),
+                transport, new UrlNormalizer(config), mediaTypes, config, metrics);
+    }
+
+    /**
+     * Outcome of one round
+     * @param latencies Download times of single files in ms, sorted
+     */
+    private record Round(long files, long bytes, long elapsedMs, List<Long> latencies) {
+        long latencyPercentile(double percentile) {
+            if (latencies.isEmpty()) {
+                return 0;
+            }
+            return latencies.get((int) Math.min(latencies.size() - 1, Math.ceil(percentile * latencies.size()) - 1));
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.url_media_save.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkExtractorTest {
+
+    @Test
+    void testExtractBothLinkKinds() throws IOException {
+        String page = "<a href=\"/file/abc123.mp4\">video</a><img src=\"//cdn.example.com/img/cat.jpg\">";
+        List<String> links = new ArrayList<>();
+
+        LinkExtractor.extract(new StringReader(page), "https://site.com", links::add);
+
+        assertEquals(List.of("https://site.com/file/abc123.mp4", "https://cdn.example.com/img/cat.jpg"), links);
+    }
+
+    @Test
+    void testLinkSplitAcrossChunks() throws IOException {
+        String padding = "x".repeat(LinkExtractor.CHUNK_SIZE - 10);
+        String page = padding + " <img src=\"//cdn.example.com/images/long/path/picture.png\"> " + padding;
+        List<String> links = new ArrayList<>();
+
+        LinkExtractor.extract(new TrickleReader(page, 7), "https://site.com", links::add);
+
+        assertEquals(List.of("https://cdn.example.com/images/long/path/picture.png"), links);
+    }
+
+    @Test
+    void testLinksEmittedBeforePageEnds() throws IOException {
+        String head = "<img src=\"//cdn.example.com/a.jpg\">";
+        String page = head + " ".repeat(LinkExtractor.CHUNK_SIZE * 4);
+        TrickleReader reader = new TrickleReader(page, LinkExtractor.CHUNK_SIZE);
+        List<Integer> readWhenFound = new ArrayList<>();
+
+        LinkExtractor.extract(reader, "https://site.com", link -> readWhenFound.add(reader.position));
+
+        assertEquals(1, readWhenFound.size());
+        assertTrue(readWhenFound.get(0) < page.length());
+    }
+
+    /**
+     * Reader that returns at most {@code step} characters per call, like a slow network stream
+     */
+    private static class TrickleReader extends Reader {
+        private final String text;
+        private final int step;
+        private int position;
+
+        TrickleReader(String text, int step) {
+            this.text = text;
+            this.step = step;
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) {
+            if (position >= text.length()) {
+                return -1;
+            }
+            int count = Math.min(Math.min(length, step), text.length() - position);
+            text.getChars(position, position + count, buffer, offset);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.url_media_save.service;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaTypeRegistryTest {
+
+    private final MediaTypeRegistry registry = new MediaTypeRegistry(new MediaSaverConfig());
+
+    @Test
+    void testUrlExtension() {
+        assertEquals(".png", MediaTypeRegistry.urlExtension("https://example.com/image.PNG?size=2.5#top"));
+        assertEquals(".gz", MediaTypeRegistry.urlExtension("https://example.com/archive.tar.gz"));
+        assertEquals(".png", MediaTypeRegistry.urlExtension("/relative/path.png"));
+        assertEquals("", MediaTypeRegistry.urlExtension("https://example.com/api/v1.2/items?format=json"));
+        assertEquals("", MediaTypeRegistry.urlExtension("https://example.com"));
+        assertEquals("", MediaTypeRegistry.urlExtension("https://example.com?file=a.jpg"));
+    }
+
+    @Test
+    void testLookupByExtensionAndContentType() {
+        assertEquals(".jpg", registry.byExtension(".jpeg").orElseThrow().extension());
+        assertEquals(Optional.empty(), registry.byExtension(".html"));
+        assertEquals(".jpg", registry.byContentType("Image/JPEG; charset=binary").orElseThrow().extension());
+        assertEquals(Optional.empty(), registry.byContentType("text/html"));
+        assertTrue(registry.isGeneric(null));
+        assertTrue(registry.isGeneric("application/octet-stream"));
+        assertFalse(registry.isGeneric("text/html"));
+    }
+
+    @Test
+    void testLookupByContent() {
+        assertEquals(".png", sniff("89504E470D0A1A0A0000000D").orElseThrow().extension());
+        assertEquals(".jpg", sniff("FFD8FFE000104A46").orElseThrow().extension());
+        assertEquals(".mp4", sniff("0000001866747970").orElseThrow().extension());
+        assertEquals(".mp3", sniff("4944330400").orElseThrow().extension());
+        assertEquals(Optional.empty(), sniff("3C68746D6C3E"));
+        assertEquals(Optional.empty(), sniff("FFD8"));
+    }
+
+    @Test
+    void testTypesAreConfigurable() {
+        MediaSaverConfig config = new MediaSaverConfig();
+        config.setMediaTypes(List.of(new MediaSaverConfig.MediaTypeDefinition(
+                List.of(".webp"), List.of("image/webp"), List.of("52494646????????57454250"))));
+        MediaTypeRegistry webpOnly = new MediaTypeRegistry(config);
+
+        assertEquals(".webp", webpOnly.byContentType("image/webp").orElseThrow().extension());
+        assertEquals(Optional.empty(), webpOnly.byExtension(".jpg"));
+        assertEquals(12, webpOnly.sniffLength());
+        assertEquals(".webp", webpOnly.byContent(HexFormat.of().parseHex("524946462A00000057454250"), 12).orElseThrow().extension());
+    }
+
+    private Optional<MediaTypeRegistry.MediaType> sniff(String hex) {
+        byte[] head = HexFormat.of().parseHex(hex);
+        return registry.byContent(head, head.length);
+    }
+}
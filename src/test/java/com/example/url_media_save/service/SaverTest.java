@@ -1,21 +1,54 @@
 package com.example.url_media_save.service;
 
 import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.db.service.ContentIndexService;
+import com.example.url_media_save.db.service.FailedDownloadService;
+import com.example.url_media_save.db.service.UrlCacheService;
 import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.service.download.DownloadPermits;
+import com.example.url_media_save.service.download.DownloadPolicy;
+import com.example.url_media_save.service.download.SegmentedDownloader;
+import com.example.url_media_save.service.download.TransferBufferPool;
+import com.example.url_media_save.service.duplicate.KnownContentFilter;
+import com.example.url_media_save.service.http.HttpTransport;
+import com.example.url_media_save.service.metrics.MediaMetrics;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 class SaverTest {
 
     private Saver saver;
     private MediaSaverConfig config;
+    private DownloadPermits permits;
+    private ContentIndexService contentIndexService;
+    private FailedDownloadService failedDownloadService;
 
     @BeforeEach
     void setUp() {
@@ -24,7 +57,16 @@ class SaverTest {
         config.setReadTimeout(5000);
         config.setMaxFilenameLength(50);
         config.setUseUrlAsFilename(false);
-        saver = new Saver(config);
+        config.setContentIndexEnabled(false);
+        MediaMetrics metrics = new MediaMetrics(new SimpleMeterRegistry());
+        HttpTransport transport = new HttpTransport(config, metrics);
+        TransferBufferPool buffers = new TransferBufferPool(config);
+        permits = new DownloadPermits(config, metrics);
+        contentIndexService = mock(ContentIndexService.class);
+        failedDownloadService = mock(FailedDownloadService.class);
+        saver = new Saver(config, transport, mock(UrlCacheService.class), new SegmentedDownloader(config, transport, buffers, permits),
+                buffers, new KnownContentFilter(contentIndexService, config), failedDownloadService, metrics,
+                new MediaTypeRegistry(config));
     }
 
     @Test
@@ -75,4 +117,315 @@ class SaverTest {
         assertEquals(1, result.size());
         assertTrue(result.contains("https://example.com/page"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void testSmallFilesAreRejectedBeforeTheyAreWritten(@TempDir Path tempDir) throws IOException {
+        HttpServer server = serve(Map.of("/declared.jpg", "tiny", "/chunked.jpg", "tiny", "/large.jpg", "x".repeat(2000)));
+        try {
+            String base = "http://localhost:" + server.getAddress().getPort();
+            Map<String, String> urls = new LinkedHashMap<>();
+            urls.put(base + "/declared.jpg", ".jpg");
+            urls.put(base + "/chunked.jpg?chunked", ".jpg");
+            urls.put(base + "/large.jpg", ".jpg");
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(urls, tempDir.toString(), false, new DownloadPolicy(1000));
+
+            assertEquals(2, result.getTooSmall().size());
+            assertEquals(1, result.getSavedFiles().size());
+            assertEquals(2000, result.getSavedFiles().get(0).getSizeBytes());
+            assertEquals(1, countFiles(tempDir));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testRepeatedContentIsNotCommittedTwice(@TempDir Path tempDir) throws IOException {
+        HttpServer server = serve(Map.of("/a.jpg", "same content", "/b.jpg", "same content"));
+        try {
+            String base = "http://localhost:" + server.getAddress().getPort();
+            Map<String, String> urls = new LinkedHashMap<>();
+            urls.put(base + "/a.jpg", ".jpg");
+            urls.put(base + "/b.jpg", ".jpg");
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(urls, tempDir.toString(), false, DownloadPolicy.unrestricted());
+
+            assertEquals(2, result.getTotalSuccessful());
+            assertNull(result.getSavedFiles().get(0).getDuplicateOf());
+            assertEquals(Path.of(result.getSavedFiles().get(0).getPath()).toAbsolutePath().toString(),
+                    result.getSavedFiles().get(1).getDuplicateOf());
+            assertEquals(1, countFiles(tempDir));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testHeadProbeSkipsTheGetOfSmallFiles(@TempDir Path tempDir) throws IOException {
+        config.setHeadSizeProbeEnabled(true);
+        AtomicInteger gets = new AtomicInteger();
+        HttpServer server = serve(Map.of("/small.jpg", "tiny"), gets);
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/small.jpg";
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(Map.of(url, ".jpg"), tempDir.toString(), false, new DownloadPolicy(1000));
+
+            assertEquals(1, result.getTooSmall().size());
+            assertEquals(0, gets.get());
+            assertEquals(0, countFiles(tempDir));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testPreallocatedFilesKeepTheirExactContent(@TempDir Path tempDir) throws IOException {
+        config.setPreallocateFiles(true);
+        String declared = "0123456789".repeat(10_000);
+        String chunked = "abcdefghij".repeat(10_000);
+        HttpServer server = serve(Map.of("/video.mp4", declared, "/clip.mp4", chunked));
+        try {
+            String base = "http://localhost:" + server.getAddress().getPort();
+            Map<String, String> urls = new LinkedHashMap<>();
+            urls.put(base + "/video.mp4", ".mp4");
+            urls.put(base + "/clip.mp4?chunked", ".mp4");
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(urls, tempDir.toString(), false, DownloadPolicy.unrestricted());
+
+            assertEquals(2, result.getSavedFiles().size());
+            assertEquals(declared, Files.readString(Path.of(result.getSavedFiles().get(0).getPath())));
+            assertEquals(chunked, Files.readString(Path.of(result.getSavedFiles().get(1).getPath())));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testPreallocatedFileIsCutToTheReceivedBytes(@TempDir Path tempDir) throws IOException {
+        config.setPreallocateFiles(true);
+        byte[] announced = new byte[100_000];
+        String received = "0123456789".repeat(3_000);
+        AtomicInteger gets = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            try (OutputStream os = exchange.getResponseBody()) {
+                if (gets.incrementAndGet() == 1) {
+                    // Announces 100 000 bytes and breaks off halfway, the file is preallocated to the announced size
+                    exchange.sendResponseHeaders(200, announced.length);
+                    os.write(announced, 0, announced.length / 2);
+                } else {
+                    // The retry gets a shorter version of the file
+                    byte[] body = received.getBytes(StandardCharsets.UTF_8);
+                    exchange.sendResponseHeaders(200, body.length);
+                    os.write(body);
+                }
+            }
+        });
+        server.start();
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/video.mp4";
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(Map.of(url, ".mp4"), tempDir.toString(), false, DownloadPolicy.unrestricted());
+
+            assertEquals(2, gets.get());
+            assertEquals(1, result.getSavedFiles().size());
+            Path savedFile = Path.of(result.getSavedFiles().get(0).getPath());
+            assertEquals(received.length(), Files.size(savedFile));
+            assertEquals(received, Files.readString(savedFile));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testExtensionlessMediaIsRecognisedByItsContent(@TempDir Path tempDir) throws IOException {
+        config.setSniffExtensionlessLinks(true);
+        HttpServer server = serve(Map.of("/media/12345", "GIF89a" + "x".repeat(100), "/about", "<html>About</html>"));
+        try {
+            String base = "http://localhost:" + server.getAddress().getPort();
+            Map<String, String> urls = new LinkedHashMap<>();
+            urls.put(base + "/media/12345", "");
+            urls.put(base + "/about", "");
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(urls, tempDir.toString(), false, DownloadPolicy.unrestricted());
+
+            assertEquals(1, result.getSavedFiles().size());
+            assertTrue(result.getSavedFiles().get(0).getPath().endsWith(".gif"));
+            assertEquals("GIF89a" + "x".repeat(100), Files.readString(Path.of(result.getSavedFiles().get(0).getPath())));
+            assertEquals(List.of(base + "/about"), result.getUrlsWithoutExtension());
+            assertEquals(1, countFiles(tempDir));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testExtensionlessLinksAreNotRequestedUnlessSniffingIsEnabled(@TempDir Path tempDir) throws IOException {
+        AtomicInteger gets = new AtomicInteger();
+        HttpServer server = serve(Map.of("/media/12345", "GIF89a" + "x".repeat(100)), gets);
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/media/12345";
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(Map.of(url, ""), tempDir.toString(), false, DownloadPolicy.unrestricted());
+
+            assertEquals(List.of(url), result.getUrlsWithoutExtension());
+            assertEquals(0, gets.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testLinksWithOtherExtensionsAreNotRequested(@TempDir Path tempDir) throws IOException {
+        AtomicInteger gets = new AtomicInteger();
+        HttpServer server = serve(Map.of("/index.html", "GIF89a"), gets);
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/index.html";
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(Map.of(url, ""), tempDir.toString(), false, DownloadPolicy.unrestricted());
+
+            assertEquals(1, result.getUrlsWithoutExtension().size());
+            assertEquals(0, gets.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testSuccessfulDownloadSettlesItsQueuedFailure(@TempDir Path tempDir) throws IOException {
+        HttpServer server = serve(Map.of("/a.jpg", "content"));
+        try {
+            String ok = "http://localhost:" + server.getAddress().getPort() + "/a.jpg";
+            // Nothing listens on port 1, the download fails
+            String missing = "http://localhost:1/missing.jpg";
+            Map<String, String> urls = new LinkedHashMap<>();
+            urls.put(ok, ".jpg");
+            urls.put(missing, ".jpg");
+
+            saver.downloadUrlToFileWithDetails(urls, tempDir.toString(), false, DownloadPolicy.unrestricted());
+
+            verify(failedDownloadService).recordSuccess(ok, tempDir.toString());
+            verify(failedDownloadService, never()).recordSuccess(eq(missing), anyString());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testNewContentIsIndexedOnceItIsOnDisk(@TempDir Path tempDir) throws IOException {
+        config.setContentIndexEnabled(true);
+        AtomicInteger indexedOnDisk = new AtomicInteger();
+        doAnswer(invocation -> {
+            if (Files.exists(Path.of(invocation.<String>getArgument(1)))) {
+                indexedOnDisk.incrementAndGet();
+            }
+            return null;
+        }).when(contentIndexService).registerStoredCopy(anyString(), anyString(), anyLong());
+        HttpServer server = serve(Map.of("/a.jpg", "new content"));
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/a.jpg";
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(Map.of(url, ".jpg"), tempDir.toString(), false, DownloadPolicy.unrestricted());
+
+            assertEquals(1, result.getSavedFiles().size());
+            assertEquals(1, indexedOnDisk.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testRepeatedContentOfACrawlPointsToTheStoredCopy(@TempDir Path tempDir, @TempDir Path storeDir) throws IOException {
+        config.setContentIndexEnabled(true);
+        Path storedCopy = Files.writeString(storeDir.resolve("stored.jpg"), "same content");
+        when(contentIndexService.findStoredCopy(anyString(), anyLong()))
+                .thenReturn(Optional.of(storedCopy.toString()));
+        HttpServer server = serve(Map.of("/a.jpg", "same content", "/b.jpg", "same content"));
+        try {
+            String base = "http://localhost:" + server.getAddress().getPort();
+            Map<String, String> urls = new LinkedHashMap<>();
+            urls.put(base + "/a.jpg", ".jpg");
+            urls.put(base + "/b.jpg", ".jpg");
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(urls, tempDir.toString(), false, DownloadPolicy.unrestricted());
+
+            assertEquals(storedCopy.toString(), result.getSavedFiles().get(0).getDuplicateOf());
+            assertEquals(storedCopy.toString(), result.getSavedFiles().get(1).getDuplicateOf());
+            assertEquals(0, countFiles(tempDir));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testSegmentedDownloadFallsBackToOneStreamWhenRangesAreIgnored(@TempDir Path tempDir) throws IOException {
+        config.setSegmentedDownloadsEnabled(true);
+        config.setSegmentedDownloadThresholdBytes(1000);
+        config.setDownloadSegments(4);
+        String content = "0123456789".repeat(400);
+        AtomicInteger rangeRequests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            if (exchange.getRequestHeaders().containsKey("Range")) {
+                rangeRequests.incrementAndGet();
+            }
+            byte[] body = content.getBytes(StandardCharsets.UTF_8);
+            // Announces ranges but always answers with the whole file
+            exchange.getResponseHeaders().set("Accept-Ranges", "bytes");
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        try {
+            String url = "http://localhost:" + server.getAddress().getPort() + "/video.mp4";
+
+            DownloadResultDto result = saver.downloadUrlToFileWithDetails(Map.of(url, ".mp4"), tempDir.toString(), false, DownloadPolicy.unrestricted());
+
+            assertEquals(1, result.getSavedFiles().size());
+            assertTrue(rangeRequests.get() > 0);
+            assertEquals(content, Files.readString(Path.of(result.getSavedFiles().get(0).getPath())));
+            // The extra segment connections were given back
+            assertEquals(config.getMaxConcurrentDownloadsPerHost(), permits.tryAcquire(url, Integer.MAX_VALUE));
+        } finally {
+            server.stop(0);
+        }
+    }
+
+    private static HttpServer serve(Map<String, String> bodies) throws IOException {
+        return serve(bodies, new AtomicInteger());
+    }
+
+    /**
+     * Serves the given bodies by path, without Content-Length when the query is "chunked"
+     * @param gets Counts GET requests
+     */
+    private static HttpServer serve(Map<String, String> bodies, AtomicInteger gets) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            byte[] body = bodies.getOrDefault(exchange.getRequestURI().getPath(), "").getBytes(StandardCharsets.UTF_8);
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            gets.incrementAndGet();
+            boolean chunked = "chunked".equals(exchange.getRequestURI().getQuery());
+            exchange.sendResponseHeaders(200, chunked ? 0 : body.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static long countFiles(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+}
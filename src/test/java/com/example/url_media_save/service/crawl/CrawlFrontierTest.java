@@ -0,0 +1,56 @@
+package com.example.url_media_save.service.crawl;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlFrontierTest {
+
+    private final UrlNormalizer urlNormalizer = new UrlNormalizer(new MediaSaverConfig());
+
+    @Test
+    void testVisitedPagesAreNotQueuedAgain() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier(urlNormalizer, 5, 100);
+
+        assertTrue(frontier.offer("https://site.com/gallery", 0));
+        CrawlPage page = frontier.take();
+        assertFalse(frontier.offer("HTTPS://Site.com:443/gallery#top", 1));
+        assertTrue(frontier.offer("https://site.com/gallery?page=2", 1));
+        frontier.done(page);
+
+        assertEquals("https://site.com/gallery?page=2", frontier.take().getUrl());
+    }
+
+    @Test
+    void testDepthAndPageLimits() {
+        CrawlFrontier frontier = new CrawlFrontier(urlNormalizer, 1, 2);
+
+        assertTrue(frontier.offer("https://site.com/", 0));
+        assertFalse(frontier.offer("https://site.com/deep", 2));
+        assertTrue(frontier.offer("https://site.com/a", 1));
+        assertFalse(frontier.offer("https://site.com/b", 1));
+        assertEquals(2, frontier.getAcceptedPages());
+    }
+
+    @Test
+    void testRepeatedLinksAreDispatchedOnce() {
+        CrawlFrontier frontier = new CrawlFrontier(urlNormalizer, 1, 10);
+
+        assertEquals("https://cdn.site.com/file/a.jpg", frontier.claimDownload("https://cdn.site.com/file/a.jpg"));
+        assertNull(frontier.claimDownload("https://CDN.site.com:443/file/a.jpg?utm_source=feed#zoom"));
+        assertEquals("https://cdn.site.com/file/a.jpg?size=large",
+                frontier.claimDownload("https://cdn.site.com/file/a.jpg?size=large&fbclid=x1"));
+    }
+
+    @Test
+    void testTakeReturnsNullWhenCrawlIsOver() throws InterruptedException {
+        CrawlFrontier frontier = new CrawlFrontier(urlNormalizer, 1, 10);
+        frontier.offer("https://site.com/", 0);
+
+        CrawlPage page = frontier.take();
+        frontier.done(page);
+
+        assertNull(frontier.take());
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.url_media_save.service.crawl;
+
+import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.dto.InfoResponseDto;
+import com.example.url_media_save.dto.SavedFileDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CrawlStatsTest {
+
+    @Test
+    void testConcurrentRecordsAreNotLost() {
+        CrawlStats stats = new CrawlStats(10);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < 1000; i++) {
+                int n = i;
+                executor.submit(() -> stats.record(n % 2 == 0 ? saved("https://site.com/" + n + ".jpg") : failed("https://site.com/" + n + ".jpg")));
+            }
+        }
+        stats.recordLinks(1000);
+
+        InfoResponseDto response = stats.toResponse().build();
+        assertEquals(1000, response.getSearchFiles());
+        assertEquals(1000, response.getTotalProcessed());
+        assertEquals(500, response.getTotalSuccessful());
+        assertEquals(500, response.getTotalFailed());
+        assertEquals(10, response.getFailedDownloadUrls().size());
+        assertEquals(0, response.getDeleteDuplicates());
+    }
+
+    @Test
+    void testDuplicatesAreCounted() {
+        CrawlStats stats = new CrawlStats(10);
+        DownloadResultDto result = saved("https://site.com/a.jpg");
+        result.getSavedFiles().get(0).setDuplicateOf("/stored/a.jpg");
+        stats.record(result);
+        stats.record(saved("https://site.com/b.jpg"));
+
+        InfoResponseDto response = stats.toResponse().build();
+        assertEquals(1, response.getDeleteDuplicates());
+        assertEquals(100L, response.getBytesReclaimed());
+        assertEquals(2, response.getTotalSuccessful());
+    }
+
+    private static DownloadResultDto saved(String url) {
+        return result(List.of(url), List.of(), List.of(SavedFileDto.builder().url(url).path("/tmp/x").sizeBytes(100).build()));
+    }
+
+    private static DownloadResultDto failed(String url) {
+        return result(List.of(), List.of(url), List.of());
+    }
+
+    private static DownloadResultDto result(List<String> successful, List<String> failed, List<SavedFileDto> savedFiles) {
+        return DownloadResultDto.builder()
+                .successfulDownloads(successful)
+                .failedDownloads(failed)
+                .invalidUrls(List.of())
+                .urlsWithoutExtension(List.of())
+                .savedFiles(savedFiles)
+                .notModified(List.of())
+                .tooSmall(List.of())
+                .totalProcessed(1)
+                .totalSuccessful(successful.size())
+                .totalFailed(failed.size())
+                .build();
+    }
+}
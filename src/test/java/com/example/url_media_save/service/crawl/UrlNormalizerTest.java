@@ -0,0 +1,42 @@
+package com.example.url_media_save.service.crawl;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UrlNormalizerTest {
+
+    private final UrlNormalizer urlNormalizer = new UrlNormalizer(new MediaSaverConfig());
+
+    @Test
+    void testSpellingsOfTheSameUrlAreEqual() {
+        assertEquals("https://site.com/file/a.jpg", urlNormalizer.normalize("HTTPS://Site.COM:443/file/a.jpg#preview"));
+        assertEquals("http://site.com/", urlNormalizer.normalize("http://site.com:80"));
+        assertEquals("https://site.com:8443/file/a.jpg", urlNormalizer.normalize("https://site.com:8443/file/a.jpg"));
+    }
+
+    @Test
+    void testTrackingParametersAreDropped() {
+        assertEquals("https://site.com/file/a.jpg?w=200&h=100",
+                urlNormalizer.normalize("https://site.com/file/a.jpg?utm_source=x&w=200&&fbclid=abc&h=100&UTM_Medium=y"));
+        assertEquals("https://site.com/file/a.jpg", urlNormalizer.normalize("https://site.com/file/a.jpg?gclid=1"));
+    }
+
+    @Test
+    void testIgnoredParametersAreConfigurable() {
+        MediaSaverConfig config = new MediaSaverConfig();
+        config.setIgnoredQueryParams(List.of("sig", "cache_*"));
+        UrlNormalizer normalizer = new UrlNormalizer(config);
+
+        assertEquals("https://site.com/a.png?utm_source=x",
+                normalizer.normalize("https://site.com/a.png?sig=1&utm_source=x&cache_bust=42"));
+    }
+
+    @Test
+    void testUnparseableUrlIsKept() {
+        assertEquals("https://site.com/a b.jpg", urlNormalizer.normalize("https://site.com/a b.jpg"));
+    }
+}
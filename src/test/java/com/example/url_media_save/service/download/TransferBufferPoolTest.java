@@ -0,0 +1,61 @@
+package com.example.url_media_save.service.download;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.service.duplicate.ContentDigest;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransferBufferPoolTest {
+    private final TransferBufferPool pool = pool(16);
+
+    @Test
+    void transferWritesAtThePositionAndDigestsTheWrittenBytes(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("file");
+        byte[] content = "content longer than a single buffer".getBytes(StandardCharsets.UTF_8);
+        MessageDigest digest = ContentDigest.newDigest();
+        long[] progress = {0};
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            pool.transfer(new ByteArrayInputStream(content, 0, 10), channel, 0, -1, digest, progress);
+            pool.transfer(new ByteArrayInputStream(content, 10, content.length - 10), channel, progress[0], -1, digest, progress);
+        }
+
+        assertEquals(content.length, progress[0]);
+        assertEquals(new String(content, StandardCharsets.UTF_8), Files.readString(file));
+        assertEquals(ContentDigest.ofFile(file), ContentDigest.toHex(digest.digest()));
+    }
+
+    @Test
+    void transferStopsAtTheLimitAndFailsOnShortStreams(@TempDir Path tempDir) throws IOException {
+        Path file = tempDir.resolve("file");
+        long[] progress = {0};
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            pool.transfer(new ByteArrayInputStream(new byte[100]), channel, 0, 40, null, progress);
+            assertEquals(40, progress[0]);
+            assertThrows(EOFException.class,
+                    () -> pool.transfer(new ByteArrayInputStream(new byte[10]), channel, 40, 20, null, progress));
+        }
+        assertEquals(50, progress[0]);
+    }
+
+    private static TransferBufferPool pool(int bufferSize) {
+        MediaSaverConfig config = new MediaSaverConfig();
+        config.setTransferBufferSize(bufferSize);
+        config.setTransferBufferPoolSize(1);
+        return new TransferBufferPool(config);
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.url_media_save.service.http;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HostLimiterTest {
+
+    private final long[] now = {0};
+    private MediaSaverConfig config;
+
+    @BeforeEach
+    void setUp() {
+        config = new MediaSaverConfig();
+        config.setHostRequestsPerSecond(10);
+        config.setHostMinRequestsPerSecond(1);
+        config.setHostBurst(2);
+        config.setCircuitBreakerFailureThreshold(3);
+        config.setCircuitBreakerOpenMs(1000);
+    }
+
+    @Test
+    void testRequestsBeyondTheBurstWaitForTokens() throws HostUnavailableException {
+        HostLimiter limiter = new HostLimiter("site.com", config, () -> now[0]);
+
+        assertEquals(0, limiter.reserve());
+        assertEquals(0, limiter.reserve());
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), limiter.reserve());
+    }
+
+    @Test
+    void testThrottlingHalvesTheRateAndHonoursRetryAfter() throws HostUnavailableException {
+        HostLimiter limiter = new HostLimiter("site.com", config, () -> now[0]);
+
+        limiter.onResponse(429, Duration.ofSeconds(5));
+
+        assertEquals(TimeUnit.SECONDS.toNanos(5), limiter.reserve());
+        now[0] = TimeUnit.SECONDS.toNanos(10);
+        limiter.reserve();
+        limiter.reserve();
+        // Rate is 5 requests per second now
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(200), limiter.reserve());
+    }
+
+    @Test
+    void testCircuitOpensAfterConsecutiveFailuresAndLetsOneTrialThrough() throws HostUnavailableException {
+        HostLimiter limiter = new HostLimiter("site.com", config, () -> now[0]);
+
+        limiter.onFailure();
+        limiter.onResponse(500, null);
+        limiter.onFailure();
+        assertThrows(HostUnavailableException.class, limiter::reserve);
+
+        now[0] = TimeUnit.SECONDS.toNanos(2);
+        limiter.reserve();
+        assertThrows(HostUnavailableException.class, limiter::reserve);
+        limiter.onResponse(200, null);
+        assertDoesNotThrow(limiter::reserve);
+    }
+
+    @Test
+    void testSuccessResetsTheFailureCount() {
+        HostLimiter limiter = new HostLimiter("site.com", config, () -> now[0]);
+
+        limiter.onFailure();
+        limiter.onFailure();
+        limiter.onResponse(404, null);
+        limiter.onFailure();
+
+        assertDoesNotThrow(limiter::reserve);
+    }
+}
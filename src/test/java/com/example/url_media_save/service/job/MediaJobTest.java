@@ -0,0 +1,68 @@
+package com.example.url_media_save.service.job;
+
+import com.example.url_media_save.dto.DownloadResultDto;
+import com.example.url_media_save.dto.FileResultDto;
+import com.example.url_media_save.dto.InfoResponseDto;
+import com.example.url_media_save.dto.JobStatusDto;
+import com.example.url_media_save.dto.SavedFileDto;
+import com.example.url_media_save.dto.UrlRequestDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MediaJobTest {
+
+    @Test
+    void testDownloadResultsUpdateCountersAndResults() throws InterruptedException {
+        MediaJob job = new MediaJob("1", new UrlRequestDto());
+        job.start();
+        job.pageProcessed("https://site.com/", 3);
+        job.downloadCompleted(result(
+                List.of(SavedFileDto.builder().url("https://site.com/a.jpg").path("/tmp/a.jpg").sizeBytes(10).build()),
+                List.of("https://site.com/b.jpg")));
+
+        JobStatusDto status = job.toStatusDto();
+        assertEquals(JobStatus.RUNNING, status.getStatus());
+        assertEquals(1, status.getPagesProcessed());
+        assertEquals(3, status.getLinksFound());
+        assertEquals(2, status.getFilesProcessed());
+        assertEquals(1, status.getFilesSaved());
+        assertEquals(1, status.getFilesFailed());
+        assertEquals(10L, status.getBytesSaved());
+
+        List<FileResultDto> results = job.awaitResults(0, 1, TimeUnit.SECONDS);
+        assertEquals(2, results.size());
+        assertEquals(FileResultDto.Outcome.SAVED, results.get(0).getOutcome());
+        assertEquals(FileResultDto.Outcome.FAILED, results.get(1).getOutcome());
+        assertTrue(job.awaitResults(2, 10, TimeUnit.MILLISECONDS).isEmpty());
+    }
+
+    @Test
+    void testAwaitResultsReturnsWhenJobFinishes() throws InterruptedException {
+        MediaJob job = new MediaJob("2", new UrlRequestDto());
+        job.start();
+        Thread.ofVirtual().start(() -> job.complete(InfoResponseDto.builder().build()));
+
+        assertTrue(job.awaitResults(0, 10, TimeUnit.SECONDS).isEmpty());
+        assertEquals(JobStatus.COMPLETED, job.getStatus());
+        assertNotNull(job.getFinishedTime());
+    }
+
+    private static DownloadResultDto result(List<SavedFileDto> savedFiles, List<String> failed) {
+        return DownloadResultDto.builder()
+                .successfulDownloads(savedFiles.stream().map(SavedFileDto::getUrl).toList())
+                .failedDownloads(failed)
+                .invalidUrls(List.of())
+                .urlsWithoutExtension(List.of())
+                .savedFiles(savedFiles)
+                .notModified(List.of())
+                .tooSmall(List.of())
+                .totalProcessed(savedFiles.size() + failed.size())
+                .totalSuccessful(savedFiles.size())
+                .totalFailed(failed.size())
+                .build();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.url_media_save.service.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class MediaMetricsTest {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MediaMetrics metrics = new MediaMetrics(registry);
+
+    @Test
+    void downloadsAreTaggedByHostAndOutcome() {
+        metrics.recordDownload("https://Example.com/a.jpg", MediaMetrics.DownloadOutcome.SAVED, 2_000_000, TimeUnit.SECONDS.toNanos(2));
+        metrics.recordDownload("https://example.com/b.jpg", MediaMetrics.DownloadOutcome.FAILED, 0, TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(2, registry.get(MediaMetrics.DOWNLOAD_DURATION).tag("host", "example.com").timers().stream()
+                .mapToLong(timer -> timer.count()).sum());
+        assertEquals(1, registry.get(MediaMetrics.DOWNLOAD_FILES).tag("outcome", "failed").counter().count());
+        assertEquals(2_000_000, registry.get(MediaMetrics.DOWNLOAD_BYTES).tag("host", "example.com").counter().count());
+        assertEquals(1_000_000, registry.get(MediaMetrics.DOWNLOAD_THROUGHPUT).summary().mean(), 1);
+    }
+
+    @Test
+    void failedRequestsAreCountedSeparatelyFromResponses() {
+        metrics.recordResponse(URI.create("https://example.com/page"), 503, 1000);
+        metrics.recordResponse(URI.create("https://example.com/page"), 0, 1000);
+
+        assertEquals(1, registry.get(MediaMetrics.HTTP_RESPONSE_TIME).tag("status", "5xx").timer().count());
+        assertEquals(1, registry.get(MediaMetrics.HTTP_RESPONSE_TIME).tag("status", "IO_ERROR").timer().count());
+        assertNull(registry.find(MediaMetrics.DOWNLOAD_BYTES).counter());
+    }
+
+    @Test
+    void poolSaturationFollowsTheSuppliers() {
+        AtomicInteger busy = new AtomicInteger();
+        metrics.registerPool("test", 4, busy::get, () -> 0);
+
+        busy.set(3);
+        assertEquals(0.75, registry.get(MediaMetrics.POOL_SATURATION).tag("pool", "test").gauge().value());
+        assertEquals(3, registry.get(MediaMetrics.POOL_BUSY).tag("pool", "test").gauge().value());
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.url_media_save.service.retry;
+
+import com.example.url_media_save.config.MediaSaverConfig;
+import com.example.url_media_save.service.http.HostUnavailableException;
+import com.example.url_media_save.service.http.HttpStatusException;
+import org.junit.jupiter.api.Test;
+
+import java.io.EOFException;
+import java.net.ConnectException;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class FailureClassTest {
+
+    @Test
+    void connectionErrorsAndTimeoutsAreNetworkFailures() {
+        assertEquals(FailureClass.NETWORK, FailureClass.of(new ConnectException("refused")));
+        assertEquals(FailureClass.NETWORK, FailureClass.of(new HttpTimeoutException("timed out")));
+        assertEquals(FailureClass.NETWORK, FailureClass.of(new EOFException("broken")));
+        assertEquals(FailureClass.NETWORK, FailureClass.of(new HttpStatusException(408, "timeout")));
+    }
+
+    @Test
+    void throttlingIsSeparatedFromServerErrors() {
+        assertEquals(FailureClass.THROTTLED, FailureClass.of(new HttpStatusException(429, "too many")));
+        assertEquals(FailureClass.THROTTLED, FailureClass.of(new HttpStatusException(503, "unavailable")));
+        assertEquals(FailureClass.SERVER_ERROR, FailureClass.of(new HttpStatusException(500, "error")));
+        assertEquals(FailureClass.SERVER_ERROR, FailureClass.of(new HostUnavailableException("example.com", Duration.ofSeconds(5))));
+    }
+
+    @Test
+    void clientErrorsAreNotRetried() {
+        assertEquals(FailureClass.CLIENT_ERROR, FailureClass.of(new HttpStatusException(404, "not found")));
+        assertEquals(1, RetryPolicy.of(FailureClass.CLIENT_ERROR, new MediaSaverConfig()).getMaxAttempts());
+    }
+}